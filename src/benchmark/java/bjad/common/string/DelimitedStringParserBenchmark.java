@@ -0,0 +1,76 @@
+package bjad.common.string;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for parsing a delimited line with a mix 
+ * of quoted and unquoted fields.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DelimitedStringParserBenchmark
+{
+   /** The number of fields within the line being parsed. */
+   @Param({"5", "50", "500"})
+   public int fieldCount;
+   
+   private String line;
+   
+   /**
+    * Builds the line to parse, quoting every other field 
+    * with an embedded delimiter and escaped quote.
+    */
+   @Setup
+   public void setup()
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < fieldCount; i++)
+      {
+         if (i > 0)
+         {
+            sb.append(',');
+         }
+         if (i % 2 == 0)
+         {
+            sb.append("field").append(i);
+         }
+         else
+         {
+            sb.append("\"quoted, \"\"field\"\" ").append(i).append('"');
+         }
+      }
+      line = sb.toString();
+   }
+   
+   /**
+    * Parses the line and reads the last section.
+    * 
+    * @return
+    *    The last section of the line.
+    */
+   @Benchmark
+   public String parse()
+   {
+      DelimitedStringParser parser = new DelimitedStringParser(line, ',');
+      return parser.section(parser.getNumberOfSections() - 1);
+   }
+}
@@ -0,0 +1,95 @@
+package bjad.common.string;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for creating secure strings and encrypting 
+ * and decrypting their values.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecureStringBenchmark
+{
+   /** The length of the value being secured. */
+   @Param({"16", "1024"})
+   public int valueLength;
+   
+   private String value;
+   private String base64Value;
+   private SecureString secureString;
+   
+   /**
+    * Creates the value to secure and the secure string 
+    * used for the encrypt and decrypt benchmarks.
+    */
+   @Setup
+   public void setup()
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < valueLength; i++)
+      {
+         sb.append((char)('a' + (i % 26)));
+      }
+      value = sb.toString();
+      secureString = new SecureString("Key", "Salt", value);
+      base64Value = secureString.getBase64String();
+   }
+   
+   /**
+    * Creates a secure string with a known key and salt, 
+    * which includes deriving the secret key.
+    * 
+    * @return
+    *    The created secure string.
+    */
+   @Benchmark
+   public SecureString create()
+   {
+      return new SecureString("Key", "Salt", value);
+   }
+   
+   /**
+    * Encrypts the value into the secure string.
+    * 
+    * @return
+    *    The secure string with the new value.
+    */
+   @Benchmark
+   public SecureString encrypt()
+   {
+      secureString.setString(value);
+      return secureString;
+   }
+   
+   /**
+    * Decrypts a base 64 value through the secure string.
+    * 
+    * @return
+    *    The decrypted value.
+    */
+   @Benchmark
+   public String decrypt()
+   {
+      secureString.setFromBase64String(base64Value);
+      return secureString.getString();
+   }
+}
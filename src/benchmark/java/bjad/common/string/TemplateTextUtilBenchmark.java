@@ -0,0 +1,107 @@
+package bjad.common.string;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for loading and filling in template text.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateTextUtilBenchmark
+{
+   /** The number of distinct template keys within the template. */
+   @Param({"10", "100", "1000"})
+   public int keyCount;
+   
+   private File templateFile;
+   private TemplateTextUtil util;
+   private Map<String, String> replacements;
+   
+   /**
+    * Writes a template using each key a few times within 
+    * lines of filler text to a temporary file.
+    * 
+    * @throws IOException
+    *    Any issues writing or loading the template. 
+    */
+   @Setup
+   public void setup() throws IOException
+   {
+      StringBuilder sb = new StringBuilder();
+      replacements = new HashMap<>();
+      for (int i = 0; i < keyCount; i++)
+      {
+         replacements.put("key" + i, "value number " + i);
+         for (int repeat = 0; repeat < 3; repeat++)
+         {
+            sb.append("Line of filler text for {{key").append(i).append("}} entry ")
+              .append(repeat).append(System.lineSeparator());
+         }
+      }
+      
+      templateFile = File.createTempFile("TemplateTextUtilBenchmark", ".txt");
+      Files.write(templateFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+      util = new TemplateTextUtil(templateFile.getAbsolutePath());
+   }
+   
+   /**
+    * Removes the temporary template file.
+    */
+   @TearDown
+   public void tearDown()
+   {
+      templateFile.delete();
+   }
+   
+   /**
+    * Loads the template from the file.
+    * 
+    * @return
+    *    The loaded template utility.
+    * @throws IOException
+    *    Any issues loading the template.
+    */
+   @Benchmark
+   public TemplateTextUtil load() throws IOException
+   {
+      return new TemplateTextUtil(templateFile.getAbsolutePath());
+   }
+   
+   /**
+    * Replaces every key within the template.
+    * 
+    * @return
+    *    The filled in template text.
+    */
+   @Benchmark
+   public String getTemplateText()
+   {
+      return util.getTemplateText(replacements);
+   }
+}
@@ -0,0 +1,80 @@
+package bjad.processor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the filter and transform operations 
+ * of the ObjectProcessor.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectProcessorBenchmark
+{
+   /** The number of objects loaded into the processor. */
+   @Param({"100", "10000", "100000"})
+   public int objectCount;
+   
+   private ObjectProcessor<BigDecimal> processor;
+   
+   /**
+    * Loads the processor with random positive and negative amounts.
+    */
+   @Setup
+   public void setup()
+   {
+      Random random = new Random(42);
+      List<BigDecimal> amounts = new ArrayList<>(objectCount);
+      for (int i = 0; i < objectCount; i++)
+      {
+         amounts.add(BigDecimal.valueOf(random.nextInt(20_000) - 10_000, 2));
+      }
+      processor = new ObjectProcessor<>(amounts);
+   }
+   
+   /**
+    * Filters out the negative amounts.
+    * 
+    * @return
+    *    The filtered processor.
+    */
+   @Benchmark
+   public ObjectProcessor<BigDecimal> filterWith()
+   {
+      return processor.filterWith((o) -> o.signum() >= 0);
+   }
+   
+   /**
+    * Transforms every amount into its negated value.
+    * 
+    * @return
+    *    The transformed amounts.
+    */
+   @Benchmark
+   public List<BigDecimal> transformWith()
+   {
+      return processor.transformWith((o) -> o.negate());
+   }
+}
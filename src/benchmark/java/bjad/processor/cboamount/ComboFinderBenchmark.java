@@ -0,0 +1,76 @@
+package bjad.processor.cboamount;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for finding the combinations of amounts 
+ * matching a target amount.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ComboFinderBenchmark
+{
+   /** The number of elements to search through. */
+   @Param({"10", "15", "20"})
+   public int elementCount;
+   
+   private List<ComboFinderElement> elements;
+   private BigDecimal amountToFind;
+   
+   /**
+    * Creates random two decimal amounts and picks a target 
+    * amount that is the sum of every third element so at 
+    * least one combination will always match.
+    */
+   @Setup
+   public void setup()
+   {
+      Random random = new Random(42);
+      elements = new ArrayList<>(elementCount);
+      amountToFind = BigDecimal.ZERO;
+      for (int i = 0; i < elementCount; i++)
+      {
+         final BigDecimal amount = BigDecimal.valueOf(random.nextInt(50_000) + 1, 2);
+         elements.add(() -> amount);
+         if (i % 3 == 0)
+         {
+            amountToFind = amountToFind.add(amount);
+         }
+      }
+   }
+   
+   /**
+    * Finds all the combinations for the target amount.
+    * 
+    * @return
+    *    The combinations found.
+    */
+   @Benchmark
+   public List<FoundComboResultList> findCombinationsForAmount()
+   {
+      return new ComboFinder(elements, amountToFind).findCombinationsForAmount();
+   }
+}
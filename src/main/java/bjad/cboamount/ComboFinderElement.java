@@ -5,17 +5,19 @@ import java.math.BigDecimal;
 /**
  * Interface for the ComboFinder class to use in order to
  * know how to get the amount from the object from the data
- * object.
+ * object. Extends the interface within bjad.processor.cboamount
+ * so elements can be passed to either combination finder.
  * 
  * @author 
  *    Ben Dougall
  */
-public interface ComboFinderElement
+public interface ComboFinderElement extends bjad.processor.cboamount.ComboFinderElement
 {
    /** 
     * Provides the amount for the element being considered by the combination finder 
     * @return
     *    The amount for the combination finder to use.
     */
+   @Override
    public BigDecimal getComboAmount();
 }
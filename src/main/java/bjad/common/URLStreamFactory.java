@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 
 /**
@@ -96,4 +97,55 @@ public final class URLStreamFactory
          return is;
       }
    }
+   
+   /**
+    * Provides the file the string passed refers to, following the 
+    * same rules as {@link #getStream(String)} to decide if the string 
+    * is a file. 
+    * 
+    * @param url
+    *    The url/string to get the file for. 
+    * @return
+    *    The file for file:/ urls or strings naming an existing file,
+    *    or null for anything else.
+    */
+   public static File getFile(String url)
+   {
+      String lcURL = url.toLowerCase();
+      if (lcURL.startsWith("file:/"))
+      {
+         try
+         {
+            return new File(new URL(url).toURI());
+         }
+         catch (IOException | URISyntaxException | IllegalArgumentException ex)
+         {
+            return null;
+         }
+      }
+      if (lcURL.startsWith("http://") || lcURL.startsWith(CLASSPATH_PREFIX))
+      {
+         return null;
+      }
+      File file = new File(url);
+      return file.exists() ? file : null;
+   }
+   
+   /**
+    * Provides the last modified time of the file the string passed 
+    * refers to, following the same rules as {@link #getStream(String)}
+    * to decide if the string is a file. 
+    * 
+    * @param url
+    *    The url/string to get the modified time for. 
+    * @return
+    *    The last modified time of the file, in milliseconds since 
+    *    the epoch, or 0 if the string is not a file or the time 
+    *    cannot be read.
+    */
+   public static long getLastModified(String url)
+   {
+      File file = getFile(url);
+      return file == null ? 0 : file.lastModified();
+   }
 }
@@ -0,0 +1,341 @@
+package bjad.common.string;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Scans delimited text as bytes, eight bytes at a time, looking for
+ * quotes, line breaks and the delimiter without decoding the text to
+ * characters. Each eight bytes are read as a long and compared against
+ * every special byte at once (SWAR, SIMD within a register), so runs
+ * of plain text are skipped a word at a time.
+ * <p>
+ * Only works for character sets that encode quotes, line breaks, spaces
+ * and the delimiter as the same single bytes as ASCII, and never use
+ * those bytes within other characters, which is the case for UTF-8 and
+ * the ISO-8859 character sets.
+ *
+ * @author
+ *   Ben Dougall
+ */
+final class DelimitedByteScanner
+{
+   private static final long ONES = 0x0101010101010101L;
+   private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+   private static final byte QUOTE = '"';
+   private static final byte LINE_FEED = '\n';
+   private static final byte CARRIAGE_RETURN = '\r';
+   private static final long QUOTES = ONES * QUOTE;
+   private static final long LINE_FEEDS = ONES * LINE_FEED;
+   private static final long CARRIAGE_RETURNS = ONES * CARRIAGE_RETURN;
+   
+   private final byte delimiter;
+   private final long delimiters;
+   private int[] offsets = new int[16];
+   private int sectionCount = 0;
+   
+   /**
+    * Constructor, setting the delimiter to look for.
+    *
+    * @param delimiter
+    *    The delimiting character, which must be an ASCII character.
+    */
+   DelimitedByteScanner(char delimiter)
+   {
+      this.delimiter = (byte)delimiter;
+      this.delimiters = ONES * (delimiter & 0xFF);
+   }
+   
+   /**
+    * Checks the character set and delimiter can be scanned as bytes.
+    *
+    * @param charset
+    *    The character set of the text.
+    * @param delimiter
+    *    The delimiting character.
+    */
+   static void checkCharset(Charset charset, char delimiter)
+   {
+      String special = "\"\r\n " + delimiter;
+      if (delimiter >= 0x80 || !Arrays.equals(special.getBytes(charset), special.getBytes(StandardCharsets.US_ASCII)))
+      {
+         throw new IllegalArgumentException(
+               "The character set must encode quotes, line breaks and the delimiter as single ASCII bytes.");
+      }
+   }
+   
+   /**
+    * Provides a view of the buffer that reads longs with the first
+    * byte as the lowest byte, which the scanning relies on.
+    *
+    * @param buffer
+    *    The buffer to view.
+    * @return
+    *    A little endian view over the same bytes, with the same
+    *    position and limit.
+    */
+   static ByteBuffer littleEndian(ByteBuffer buffer)
+   {
+      return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+   }
+   
+   /**
+    * Scans a record, recording the start and end of each of its
+    * sections.
+    *
+    * @param buffer
+    *    The little endian buffer to scan.
+    * @param start
+    *    The start of the record, which must be outside of quotes.
+    * @param end
+    *    The end of the text to scan.
+    * @param lineBreaks
+    *    True if a line break outside of quotes ends the record, or
+    *    false to scan the text up to the end as a single record.
+    * @return
+    *    The position of the line break ending the record, or the
+    *    end if the record ran to the end of the text.
+    */
+   int scan(ByteBuffer buffer, int start, int end, boolean lineBreaks)
+   {
+      sectionCount = 0;
+      int sectionStart = start;
+      boolean quoted = false;
+      int i = start;
+      while (i < end)
+      {
+         long mask;
+         int width;
+         if (end - i >= Long.BYTES)
+         {
+            mask = specials(buffer.getLong(i));
+            width = Long.BYTES;
+         }
+         else
+         {
+            mask = specials(buffer.get(i) & 0xFFL) & 0x80L;
+            width = 1;
+         }
+         
+         while (mask != 0)
+         {
+            int at = i + (Long.numberOfTrailingZeros(mask) >>> 3);
+            mask &= mask - 1;
+            byte b = buffer.get(at);
+            if (b == QUOTE)
+            {
+               quoted = !quoted;
+            }
+            else if (!quoted && b == delimiter)
+            {
+               addSection(sectionStart, at);
+               sectionStart = at + 1;
+            }
+            else if (!quoted && lineBreaks && (b == LINE_FEED || b == CARRIAGE_RETURN))
+            {
+               addSection(sectionStart, at);
+               return at;
+            }
+         }
+         i += width;
+      }
+      addSection(sectionStart, end);
+      return end;
+   }
+   
+   /**
+    * Counts the quotes within part of the text, and finds where the
+    * first line break outside of quotes is when the text starts outside
+    * of quotes, and when it starts within quotes.
+    *
+    * @param buffer
+    *    The little endian buffer to scan.
+    * @param start
+    *    The start of the text to scan.
+    * @param end
+    *    The end of the text to scan.
+    * @return
+    *    The number of quotes, the position of the first line break
+    *    starting outside of quotes and the position starting within
+    *    quotes, with -1 for a position when there is no line break.
+    */
+   static long[] countQuotes(ByteBuffer buffer, int start, int end)
+   {
+      long quotes = 0;
+      long[] lineBreaks = {-1, -1};
+      int found = 0;
+      int i = start;
+      while (i < end)
+      {
+         long quoteMask;
+         long breakMask;
+         int width;
+         if (end - i >= Long.BYTES)
+         {
+            long word = buffer.getLong(i);
+            quoteMask = matches(word, QUOTES);
+            breakMask = found < 2 ? matches(word, LINE_FEEDS) | matches(word, CARRIAGE_RETURNS) : 0;
+            width = Long.BYTES;
+         }
+         else
+         {
+            long word = buffer.get(i) & 0xFFL;
+            quoteMask = matches(word, QUOTES) & 0x80L;
+            breakMask = (matches(word, LINE_FEEDS) | matches(word, CARRIAGE_RETURNS)) & 0x80L;
+            width = 1;
+         }
+         
+         if (breakMask == 0 || found == 2)
+         {
+            quotes += Long.bitCount(quoteMask);
+         }
+         else
+         {
+            long mask = quoteMask | breakMask;
+            while (mask != 0)
+            {
+               long bit = mask & -mask;
+               mask &= mask - 1;
+               if ((quoteMask & bit) != 0)
+               {
+                  quotes++;
+               }
+               else if (lineBreaks[(int)(quotes & 1)] < 0)
+               {
+                  lineBreaks[(int)(quotes & 1)] = i + (Long.numberOfTrailingZeros(bit) >>> 3);
+                  found++;
+               }
+            }
+         }
+         i += width;
+      }
+      return new long[] {quotes, lineBreaks[0], lineBreaks[1]};
+   }
+   
+   /**
+    * Provides the number of sections found by the last scan.
+    *
+    * @return
+    *    The section count.
+    */
+   int getSectionCount()
+   {
+      return sectionCount;
+   }
+   
+   /**
+    * Provides a copy of the start and end of each section found by
+    * the last scan.
+    *
+    * @return
+    *    The offsets, two for each section.
+    */
+   int[] copyOffsets()
+   {
+      return Arrays.copyOf(offsets, sectionCount * 2);
+   }
+   
+   /**
+    * Converts the raw bytes of a section into its value the same way
+    * as the characters of a section, removing a leading and trailing
+    * quote, un-escaping doubled quotes and trimming the result, before
+    * decoding only the bytes of the value.
+    *
+    * @param buffer
+    *    The buffer containing the section.
+    * @param start
+    *    The start of the section, inclusive.
+    * @param end
+    *    The end of the section, exclusive.
+    * @param charset
+    *    The character set to decode the value with.
+    * @return
+    *    The section's value.
+    */
+   static String unquote(ByteBuffer buffer, int start, int end, Charset charset)
+   {
+      int from = start;
+      int to = end;
+      if (to > from && buffer.get(from) == QUOTE)
+      {
+         from++;
+      }
+      if (to > from && buffer.get(to - 1) == QUOTE)
+      {
+         to--;
+      }
+      
+      byte[] bytes = new byte[to - from];
+      ByteBuffer source = buffer.duplicate();
+      source.position(from);
+      source.get(bytes);
+      
+      int length = 0;
+      int i = 0;
+      while (i < bytes.length)
+      {
+         bytes[length++] = bytes[i];
+         i += bytes[i] == QUOTE && i + 1 < bytes.length && bytes[i + 1] == QUOTE ? 2 : 1;
+      }
+      
+      int first = 0;
+      while (first < length && (bytes[first] & 0xFF) <= ' ')
+      {
+         first++;
+      }
+      while (length > first && (bytes[length - 1] & 0xFF) <= ' ')
+      {
+         length--;
+      }
+      return new String(bytes, first, length - first, charset);
+   }
+   
+   /**
+    * Finds the special bytes within a word.
+    *
+    * @param word
+    *    Eight bytes of text, first byte lowest.
+    * @return
+    *    The word with the high bit of each quote, line break and
+    *    delimiter byte set, and every other bit clear.
+    */
+   private long specials(long word)
+   {
+      return matches(word, QUOTES) | matches(word, delimiters)
+            | matches(word, LINE_FEEDS) | matches(word, CARRIAGE_RETURNS);
+   }
+   
+   /**
+    * Finds the bytes within a word that equal a byte, without any
+    * false matches from carries between the bytes.
+    *
+    * @param word
+    *    Eight bytes of text.
+    * @param pattern
+    *    The byte to find, repeated in all eight bytes.
+    * @return
+    *    The word with the high bit of each matching byte set, and
+    *    every other bit clear.
+    */
+   private static long matches(long word, long pattern)
+   {
+      long x = word ^ pattern;
+      return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+   }
+   
+   /**
+    * Adds the start and end of a section to the offsets.
+    *
+    * @param start
+    *    The start of the section, inclusive.
+    * @param end
+    *    The end of the section, exclusive.
+    */
+   private void addSection(int start, int end)
+   {
+      offsets = DelimitedStringParser.addOffsets(offsets, sectionCount++, start, end);
+   }
+}
@@ -0,0 +1,88 @@
+package bjad.common.string;
+
+/**
+ * An error binding one column of a delimited record to
+ * an object through a {@link DelimitedSchema}.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public final class DelimitedColumnError
+{
+   private final int columnIndex;
+   private final String columnName;
+   private final String value;
+   private final String message;
+   
+   /**
+    * Constructor, setting the details of the error.
+    *
+    * @param columnIndex
+    *    The index of the column's section within the record.
+    * @param columnName
+    *    The name of the column.
+    * @param value
+    *    The value of the section, or null if the record did not
+    *    have the section.
+    * @param message
+    *    The description of the error.
+    */
+   public DelimitedColumnError(int columnIndex, String columnName, String value, String message)
+   {
+      this.columnIndex = columnIndex;
+      this.columnName = columnName;
+      this.value = value;
+      this.message = message;
+   }
+   
+   /**
+    * Provides the index of the column's section within the record.
+    *
+    * @return
+    *    The column index.
+    */
+   public int getColumnIndex()
+   {
+      return columnIndex;
+   }
+   
+   /**
+    * Provides the name of the column.
+    *
+    * @return
+    *    The column name.
+    */
+   public String getColumnName()
+   {
+      return columnName;
+   }
+   
+   /**
+    * Provides the value of the section that could not be bound.
+    *
+    * @return
+    *    The value, or null if the record did not have the section.
+    */
+   public String getValue()
+   {
+      return value;
+   }
+   
+   /**
+    * Provides the description of the error.
+    *
+    * @return
+    *    The error message.
+    */
+   public String getMessage()
+   {
+      return message;
+   }
+   
+   @Override
+   public String toString()
+   {
+      return columnName + " (column " + columnIndex + "): " + message
+            + (value == null ? "" : " [" + value + "]");
+   }
+}
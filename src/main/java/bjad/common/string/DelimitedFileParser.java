@@ -0,0 +1,448 @@
+package bjad.common.string;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Parses the delimited records of a file in parallel, memory mapping
+ * the file and splitting it into chunks that are parsed on a fork join
+ * pool. The records and their sections are the same as reading the
+ * file with a {@link DelimitedRecordReader}, including quoted sections
+ * that contain line breaks.
+ * <p>
+ * The file is split in two passes. The first pass counts the quotes
+ * within each chunk, along with where the first line break outside of
+ * quotes would be if the chunk started inside or outside of quotes.
+ * Adding up the quote counts gives whether each chunk starts within
+ * quotes, which moves each chunk's start to the beginning of the next
+ * record. The second pass then parses the chunks.
+ * <p>
+ * Both passes scan the mapped bytes eight at a time without decoding
+ * them, and each record only decodes the sections that are read from
+ * it. The records refer to the mapped bytes of their chunk, which stay
+ * mapped until the records are no longer used. The character set must
+ * encode quotes, line breaks, spaces and the delimiter as the same
+ * single bytes as ASCII, and never use those bytes within other
+ * characters, which is the case for UTF-8 and the ISO-8859 character
+ * sets.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public class DelimitedFileParser
+{
+   /** The default number of bytes within each chunk of the file. */
+   public static final int DEFAULT_CHUNK_SIZE = 1 << 24;
+   
+   private final Path file;
+   private final Charset charset;
+   private final char delimiter;
+   private int chunkSize = DEFAULT_CHUNK_SIZE;
+   private boolean ordered = true;
+   private ForkJoinPool forkJoinPool = null;
+   
+   /**
+    * Creates the file parser, reading the file as UTF-8 text.
+    *
+    * @param file
+    *    The file to parse.
+    * @param delimiter
+    *    The delimiting character that splits the records
+    *    into various sections.
+    */
+   public DelimitedFileParser(Path file, char delimiter)
+   {
+      this(file, StandardCharsets.UTF_8, delimiter);
+   }
+   
+   /**
+    * Creates the file parser, reading the file as text in the
+    * character set passed.
+    *
+    * @param file
+    *    The file to parse.
+    * @param charset
+    *    The character set of the text within the file.
+    * @param delimiter
+    *    The delimiting character that splits the records
+    *    into various sections.
+    */
+   public DelimitedFileParser(Path file, Charset charset, char delimiter)
+   {
+      DelimitedByteScanner.checkCharset(charset, delimiter);
+      this.file = file;
+      this.charset = charset;
+      this.delimiter = delimiter;
+   }
+   
+   /**
+    * Provides the number of bytes within each chunk of the file.
+    *
+    * @return
+    *    The chunk size.
+    */
+   public int getChunkSize()
+   {
+      return chunkSize;
+   }
+   
+   /**
+    * Sets the number of bytes within each chunk of the file. Chunks
+    * are moved to start at the beginning of a record, so a chunk can
+    * be larger than this when a record spans the chunks.
+    *
+    * @param chunkSize
+    *    The chunk size, which must be at least 1.
+    */
+   public void setChunkSize(int chunkSize)
+   {
+      if (chunkSize < 1)
+      {
+         throw new IllegalArgumentException("The chunk size must be at least 1.");
+      }
+      this.chunkSize = chunkSize;
+   }
+   
+   /**
+    * Checks if records are passed to the consumer in the order they
+    * are within the file.
+    *
+    * @return
+    *    True if the records are passed in order, which is the default.
+    */
+   public boolean isOrdered()
+   {
+      return ordered;
+   }
+   
+   /**
+    * Sets if records are passed to the consumer in the order they are
+    * within the file. When ordered, the records are passed one at a time
+    * from the thread parsing the file, holding the records of a few
+    * chunks at a time in memory. When not ordered, each chunk passes its
+    * records to the consumer as it parses them, so the consumer is called
+    * from many threads at once and must be thread safe.
+    *
+    * @param ordered
+    *    True to pass the records in order.
+    */
+   public void setOrdered(boolean ordered)
+   {
+      this.ordered = ordered;
+   }
+   
+   /**
+    * Provides the pool the chunks are parsed on.
+    *
+    * @return
+    *    The pool set, or the common fork join pool if no pool was set.
+    */
+   public ForkJoinPool getForkJoinPool()
+   {
+      return forkJoinPool == null ? ForkJoinPool.commonPool() : forkJoinPool;
+   }
+   
+   /**
+    * Sets the pool the chunks are parsed on.
+    *
+    * @param forkJoinPool
+    *    The pool to use, or null to use the common fork join pool.
+    */
+   public void setForkJoinPool(ForkJoinPool forkJoinPool)
+   {
+      this.forkJoinPool = forkJoinPool;
+   }
+   
+   /**
+    * Parses the file, passing each record to the consumer. Blank lines
+    * between records are skipped.
+    *
+    * @param consumer
+    *    The consumer to pass the records to.
+    * @return
+    *    The number of records parsed.
+    * @throws IOException
+    *    Any IO Exception encountered reading the file, or if a single
+    *    record is larger than 2GB.
+    */
+   public long parse(Consumer<DelimitedStringParser> consumer) throws IOException
+   {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+      {
+         long[] bounds = findChunks(channel);
+         int chunks = bounds.length - 1;
+         ForkJoinPool pool = getForkJoinPool();
+         long count = 0;
+         
+         if (ordered)
+         {
+            Deque<ForkJoinTask<List<DelimitedStringParser>>> window = new ArrayDeque<>();
+            int next = 0;
+            try
+            {
+               while (next < chunks || !window.isEmpty())
+               {
+                  while (next < chunks && window.size() <= pool.getParallelism())
+                  {
+                     long start = bounds[next];
+                     long end = bounds[++next];
+                     window.add(pool.submit(() -> 
+                     {
+                        List<DelimitedStringParser> records = new ArrayList<>();
+                        parseChunk(channel, start, end, records::add);
+                        return records;
+                     }));
+                  }
+                  for (DelimitedStringParser record : join(window.poll()))
+                  {
+                     consumer.accept(record);
+                     count++;
+                  }
+               }
+            }
+            finally
+            {
+               cancel(window);
+            }
+         }
+         else
+         {
+            List<ForkJoinTask<Long>> tasks = new ArrayList<>(chunks);
+            try
+            {
+               for (int i = 0; i < chunks; i++)
+               {
+                  long start = bounds[i];
+                  long end = bounds[i + 1];
+                  tasks.add(pool.submit(() -> parseChunk(channel, start, end, consumer)));
+               }
+               for (ForkJoinTask<Long> task : tasks)
+               {
+                  count += join(task);
+               }
+            }
+            finally
+            {
+               cancel(tasks);
+            }
+         }
+         return count;
+      }
+   }
+   
+   /**
+    * Works out where each chunk of the file starts, so that every chunk
+    * starts at the beginning of a record.
+    *
+    * @param channel
+    *    The channel to the file.
+    * @return
+    *    The start of each chunk, followed by the size of the file.
+    * @throws IOException
+    *    Any IO Exception encountered reading the file.
+    */
+   private long[] findChunks(FileChannel channel) throws IOException
+   {
+      long size = channel.size();
+      long start = skipByteOrderMark(channel);
+      int count = (int)Math.max(1, (size - start + chunkSize - 1) / chunkSize);
+      
+      ForkJoinPool pool = getForkJoinPool();
+      List<ForkJoinTask<long[]>> tasks = new ArrayList<>(count);
+      try
+      {
+         for (int i = 0; i < count; i++)
+         {
+            final long chunkStart = start + (long)i * chunkSize;
+            final long chunkEnd = Math.min(size, chunkStart + chunkSize);
+            tasks.add(pool.submit(() -> countQuotes(channel, chunkStart, chunkEnd)));
+         }
+         
+         long[] bounds = new long[count + 1];
+         int found = 0;
+         bounds[found++] = start;
+         boolean quoted = false;
+         for (int i = 0; i < count; i++)
+         {
+            long[] counts = join(tasks.get(i));
+            long lineBreak = quoted ? counts[2] : counts[1];
+            if (i > 0 && lineBreak >= 0)
+            {
+               bounds[found++] = lineBreak + 1;
+            }
+            quoted ^= (counts[0] & 1) == 1;
+         }
+         bounds[found++] = size;
+         return Arrays.copyOf(bounds, found);
+      }
+      finally
+      {
+         cancel(tasks);
+      }
+   }
+   
+   /**
+    * Counts the quotes within a chunk of the file, and finds where the
+    * first line break outside of quotes is when the chunk starts outside
+    * of quotes, and when it starts within quotes.
+    *
+    * @param channel
+    *    The channel to the file.
+    * @param start
+    *    The start of the chunk.
+    * @param end
+    *    The end of the chunk.
+    * @return
+    *    The number of quotes, the position of the first line break
+    *    starting outside of quotes and the position starting within
+    *    quotes, with -1 for a position when there is no line break.
+    * @throws IOException
+    *    Any IO Exception encountered reading the file.
+    */
+   private static long[] countQuotes(FileChannel channel, long start, long end) throws IOException
+   {
+      ByteBuffer buffer = DelimitedByteScanner.littleEndian(channel.map(MapMode.READ_ONLY, start, end - start));
+      long[] counts = DelimitedByteScanner.countQuotes(buffer, 0, buffer.limit());
+      for (int i = 1; i < counts.length; i++)
+      {
+         counts[i] = counts[i] < 0 ? -1 : start + counts[i];
+      }
+      return counts;
+   }
+   
+   /**
+    * Finds where the text within the file starts, skipping a UTF-8
+    * byte order mark.
+    *
+    * @param channel
+    *    The channel to the file.
+    * @return
+    *    The position of the first character of the text.
+    * @throws IOException
+    *    Any IO Exception encountered reading the file.
+    */
+   private long skipByteOrderMark(FileChannel channel) throws IOException
+   {
+      if (!StandardCharsets.UTF_8.equals(charset) || channel.size() < 3)
+      {
+         return 0;
+      }
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, 3);
+      boolean mark = buffer.get(0) == (byte)0xEF && buffer.get(1) == (byte)0xBB && buffer.get(2) == (byte)0xBF;
+      return mark ? 3 : 0;
+   }
+   
+   /**
+    * Parses the records within a chunk of the file.
+    *
+    * @param channel
+    *    The channel to the file.
+    * @param start
+    *    The start of the chunk, which is the beginning of a record.
+    * @param end
+    *    The end of the chunk.
+    * @param consumer
+    *    The consumer to pass the records to as they are parsed.
+    * @return
+    *    The number of records parsed.
+    * @throws IOException
+    *    Any IO Exception encountered reading the file, or if the
+    *    chunk is larger than 2GB.
+    */
+   private long parseChunk(FileChannel channel, long start, long end,
+         Consumer<DelimitedStringParser> consumer) throws IOException
+   {
+      if (end - start > Integer.MAX_VALUE)
+      {
+         throw new IOException("The record starting at byte " + start + " is larger than 2GB.");
+      }
+      ByteBuffer buffer = DelimitedByteScanner.littleEndian(channel.map(MapMode.READ_ONLY, start, end - start));
+      DelimitedByteScanner scanner = new DelimitedByteScanner(delimiter);
+      long count = 0;
+      int length = buffer.limit();
+      int position = 0;
+      while (position < length)
+      {
+         int lineBreak = scanner.scan(buffer, position, length, true);
+         if (lineBreak > position)
+         {
+            consumer.accept(new DelimitedStringParser(buffer, charset, scanner.copyOffsets(), scanner.getSectionCount()));
+            count++;
+         }
+         position = lineBreak + 1;
+      }
+      return count;
+   }
+   
+   /**
+    * Waits for a task to finish, rethrowing any exception it threw.
+    *
+    * @param task
+    *    The task to wait for.
+    * @return
+    *    The result of the task.
+    * @throws IOException
+    *    Any IO Exception thrown by the task.
+    */
+   private static <T> T join(ForkJoinTask<T> task) throws IOException
+   {
+      try
+      {
+         return task.get();
+      }
+      catch (InterruptedException ex)
+      {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while parsing the file.", ex);
+      }
+      catch (ExecutionException ex)
+      {
+         Throwable cause = ex.getCause();
+         if (cause instanceof IOException)
+         {
+            throw (IOException)cause;
+         }
+         if (cause instanceof RuntimeException)
+         {
+            throw (RuntimeException)cause;
+         }
+         if (cause instanceof Error)
+         {
+            throw (Error)cause;
+         }
+         throw new IOException(cause);
+      }
+   }
+   
+   /**
+    * Cancels any of the tasks that have not finished, when parsing
+    * stops early because of an exception.
+    *
+    * @param tasks
+    *    The tasks to cancel.
+    */
+   private static void cancel(Collection<? extends ForkJoinTask<?>> tasks)
+   {
+      for (ForkJoinTask<?> task : tasks)
+      {
+         task.cancel(false);
+      }
+   }
+}
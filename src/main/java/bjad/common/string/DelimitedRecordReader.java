@@ -0,0 +1,277 @@
+package bjad.common.string;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads delimited records one at a time from a reader or stream,
+ * separating each record into sections the same way as the
+ * {@link DelimitedStringParser}. Records end at a line break
+ * (\n, \r\n or \r) that is not within quotes, so quoted sections
+ * can contain line breaks. The text is read through a reusable
+ * buffer, so only the record being read is held in memory.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public class DelimitedRecordReader implements Closeable
+{
+   /** The default size of the buffer the text is read through. */
+   public static final int DEFAULT_BUFFER_SIZE = 8192;
+   
+   private final Reader reader;
+   private final char delimiter;
+   private final char[] buffer;
+   private final StringBuilder record = new StringBuilder();
+   private int[] offsets = new int[16];
+   private int position = 0;
+   private int limit = 0;
+   private boolean skipLineFeed = false;
+   private boolean endOfInput = false;
+   private long recordNumber = 0;
+   
+   /**
+    * Creates the record reader, reading UTF-8 text from the
+    * stream passed.
+    *
+    * @param stream
+    *    The stream to read the records from.
+    * @param delimiter
+    *    The delimiting character that splits the records
+    *    into various sections.
+    */
+   public DelimitedRecordReader(InputStream stream, char delimiter)
+   {
+      this(stream, StandardCharsets.UTF_8, delimiter);
+   }
+   
+   /**
+    * Creates the record reader, reading text in the character
+    * set passed from the stream.
+    *
+    * @param stream
+    *    The stream to read the records from.
+    * @param charset
+    *    The character set of the text within the stream.
+    * @param delimiter
+    *    The delimiting character that splits the records
+    *    into various sections.
+    */
+   public DelimitedRecordReader(InputStream stream, Charset charset, char delimiter)
+   {
+      this(new InputStreamReader(stream, charset), delimiter);
+   }
+   
+   /**
+    * Creates the record reader, reading the records from the
+    * reader passed.
+    *
+    * @param reader
+    *    The reader to read the records from.
+    * @param delimiter
+    *    The delimiting character that splits the records
+    *    into various sections.
+    */
+   public DelimitedRecordReader(Reader reader, char delimiter)
+   {
+      this(reader, delimiter, DEFAULT_BUFFER_SIZE);
+   }
+   
+   /**
+    * Creates the record reader, reading the records from the
+    * reader passed through a buffer of the size passed.
+    *
+    * @param reader
+    *    The reader to read the records from.
+    * @param delimiter
+    *    The delimiting character that splits the records
+    *    into various sections.
+    * @param bufferSize
+    *    The number of characters to read from the reader at a time.
+    */
+   public DelimitedRecordReader(Reader reader, char delimiter, int bufferSize)
+   {
+      if (bufferSize < 1)
+      {
+         throw new IllegalArgumentException("The buffer size must be at least 1.");
+      }
+      this.reader = reader;
+      this.delimiter = delimiter;
+      this.buffer = new char[bufferSize];
+   }
+   
+   /**
+    * Reads the next record. Blank lines between records are skipped.
+    * If the input ends within quotes, the rest of the input becomes
+    * the last section of the record.
+    *
+    * @return
+    *    The sections of the record, or null once there are no
+    *    more records to read.
+    * @throws IOException
+    *    Any IO Exception encountered reading from the reader.
+    */
+   public DelimitedStringParser readRecord() throws IOException
+   {
+      int sectionCount = 0;
+      int sectionStart = 0;
+      boolean quoteFound = false;
+      boolean recordStarted = false;
+      record.setLength(0);
+      
+      while (position < limit || fill())
+      {
+         char c = buffer[position];
+         if (skipLineFeed)
+         {
+            skipLineFeed = false;
+            if (c == '\n')
+            {
+               position++;
+               continue;
+            }
+         }
+         
+         if (quoteFound)
+         {
+            int start = position;
+            while (position < limit && buffer[position] != '"')
+            {
+               position++;
+            }
+            record.append(buffer, start, position - start);
+            if (position < limit)
+            {
+               record.append('"');
+               position++;
+               quoteFound = false;
+            }
+         }
+         else if (c == '\n' || c == '\r')
+         {
+            position++;
+            skipLineFeed = c == '\r';
+            if (recordStarted)
+            {
+               return endRecord(sectionCount, sectionStart);
+            }
+         }
+         else if (c == delimiter)
+         {
+            position++;
+            recordStarted = true;
+            offsets = DelimitedStringParser.addOffsets(offsets, sectionCount++, sectionStart, record.length());
+            sectionStart = record.length();
+         }
+         else if (c == '"')
+         {
+            position++;
+            recordStarted = true;
+            quoteFound = true;
+            record.append(c);
+         }
+         else
+         {
+            int start = position;
+            while (position < limit && !isSpecial(buffer[position]))
+            {
+               position++;
+            }
+            recordStarted = true;
+            record.append(buffer, start, position - start);
+         }
+      }
+      return recordStarted ? endRecord(sectionCount, sectionStart) : null;
+   }
+   
+   /**
+    * Gets the number of records read so far, which is
+    * the number of the last record returned.
+    *
+    * @return
+    *    The number of records read.
+    */
+   public long getRecordNumber()
+   {
+      return recordNumber;
+   }
+   
+   /**
+    * Closes the reader the records are read from.
+    *
+    * @throws IOException
+    *    Any IO Exception encountered closing the reader.
+    */
+   @Override
+   public void close() throws IOException
+   {
+      reader.close();
+   }
+   
+   /**
+    * Adds the last section to the record and counts the record.
+    *
+    * @param sectionCount
+    *    The number of sections before the last section.
+    * @param sectionStart
+    *    The start of the last section.
+    * @return
+    *    The record.
+    */
+   private DelimitedStringParser endRecord(int sectionCount, int sectionStart)
+   {
+      offsets = DelimitedStringParser.addOffsets(offsets, sectionCount, sectionStart, record.length());
+      recordNumber++;
+      return new DelimitedStringParser(record.toString(),
+            Arrays.copyOf(offsets, (sectionCount + 1) * 2), sectionCount + 1);
+   }
+   
+   /**
+    * Checks if the character passed ends a run of plain
+    * characters within a section.
+    *
+    * @param c
+    *    The character to check.
+    * @return
+    *    True for quotes, line breaks and the delimiter.
+    */
+   private boolean isSpecial(char c)
+   {
+      return c == '"' || c == '\n' || c == '\r' || c == delimiter;
+   }
+   
+   /**
+    * Refills the buffer from the reader.
+    *
+    * @return
+    *    True if more characters were read, false at the
+    *    end of the input.
+    * @throws IOException
+    *    Any IO Exception encountered reading from the reader.
+    */
+   private boolean fill() throws IOException
+   {
+      if (endOfInput)
+      {
+         return false;
+      }
+      
+      int read;
+      do
+      {
+         read = reader.read(buffer, 0, buffer.length);
+      }
+      while (read == 0);
+      
+      position = 0;
+      limit = Math.max(read, 0);
+      endOfInput = read < 0;
+      return read > 0;
+   }
+}
@@ -0,0 +1,764 @@
+package bjad.common.string;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Binds the sections of delimited records to objects, declaring the
+ * type of each column and the setter that receives its value. Numbers,
+ * booleans and ISO dates are read straight from the text or bytes the
+ * record was parsed from, without creating a String for each section,
+ * and are passed to primitive setters without boxing. Setters can just
+ * as easily write to primitive arrays as to bean properties.
+ * <p>
+ * Empty and missing sections are passed as null to decimal, date and
+ * string columns, and are errors for the int, long, double and boolean
+ * columns. Every column of a record is bound even when some fail, and
+ * the error for each failed column is reported.
+ *
+ * @author
+ *   Ben Dougall
+ * @param <T>
+ *    The type of object the records are bound to.
+ */
+public class DelimitedSchema<T>
+{
+   private static final String REQUIRED = "A value is required.";
+   private static final int MAX_LONG_DIGITS = 18;
+   private static final int MAX_EXACT_DOUBLE_DIGITS = 15;
+   private static final double[] POWERS_OF_TEN = {
+         1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+         1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+   
+   private final Supplier<T> factory;
+   private final List<AbstractColumn<T>> columns = new ArrayList<>();
+   
+   /**
+    * Constructor, setting how the objects the records are
+    * bound to are created.
+    *
+    * @param factory
+    *    Creates a new object for each record bound.
+    */
+   public DelimitedSchema(Supplier<T> factory)
+   {
+      this.factory = factory;
+   }
+   
+   /**
+    * Adds an int column.
+    *
+    * @param name
+    *    The name of the column, used when reporting errors.
+    * @param index
+    *    The index of the column's section within the records.
+    * @param setter
+    *    Receives the object being bound and the column's value.
+    * @return
+    *    This schema, to add more columns to.
+    */
+   public DelimitedSchema<T> intColumn(String name, int index, ObjIntConsumer<T> setter)
+   {
+      columns.add(new AbstractColumn<T>(name, index)
+      {
+         @Override
+         void bind(T target, DelimitedStringParser record, int start, int end)
+         {
+            setter.accept(target, (int)parseLong(record, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE));
+         }
+      });
+      return this;
+   }
+   
+   /**
+    * Adds a long column.
+    *
+    * @param name
+    *    The name of the column, used when reporting errors.
+    * @param index
+    *    The index of the column's section within the records.
+    * @param setter
+    *    Receives the object being bound and the column's value.
+    * @return
+    *    This schema, to add more columns to.
+    */
+   public DelimitedSchema<T> longColumn(String name, int index, ObjLongConsumer<T> setter)
+   {
+      columns.add(new AbstractColumn<T>(name, index)
+      {
+         @Override
+         void bind(T target, DelimitedStringParser record, int start, int end)
+         {
+            setter.accept(target, parseLong(record, start, end, Long.MIN_VALUE, Long.MAX_VALUE));
+         }
+      });
+      return this;
+   }
+   
+   /**
+    * Adds a double column. Values with up to 15 digits and 22
+    * decimal places are read straight from the record, and any
+    * other values fall back to {@link Double#parseDouble(String)}.
+    *
+    * @param name
+    *    The name of the column, used when reporting errors.
+    * @param index
+    *    The index of the column's section within the records.
+    * @param setter
+    *    Receives the object being bound and the column's value.
+    * @return
+    *    This schema, to add more columns to.
+    */
+   public DelimitedSchema<T> doubleColumn(String name, int index, ObjDoubleConsumer<T> setter)
+   {
+      columns.add(new AbstractColumn<T>(name, index)
+      {
+         @Override
+         void bind(T target, DelimitedStringParser record, int start, int end)
+         {
+            setter.accept(target, parseDouble(record, getIndex(), start, end));
+         }
+      });
+      return this;
+   }
+   
+   /**
+    * Adds a decimal column. Values with up to 18 digits are read
+    * straight from the record, and any other values fall back to
+    * {@link BigDecimal#BigDecimal(String)}.
+    *
+    * @param name
+    *    The name of the column, used when reporting errors.
+    * @param index
+    *    The index of the column's section within the records.
+    * @param setter
+    *    Receives the object being bound and the column's value,
+    *    which is null when the section is empty or missing.
+    * @return
+    *    This schema, to add more columns to.
+    */
+   public DelimitedSchema<T> decimalColumn(String name, int index, BiConsumer<T, BigDecimal> setter)
+   {
+      columns.add(new AbstractColumn<T>(name, index, true)
+      {
+         @Override
+         void bind(T target, DelimitedStringParser record, int start, int end)
+         {
+            setter.accept(target, start == end ? null : parseDecimal(record, getIndex(), start, end));
+         }
+      });
+      return this;
+   }
+   
+   /**
+    * Adds a boolean column, accepting true, false, yes, no, y, n, 1
+    * and 0 in any case.
+    *
+    * @param name
+    *    The name of the column, used when reporting errors.
+    * @param index
+    *    The index of the column's section within the records.
+    * @param setter
+    *    Receives the object being bound and the column's value.
+    * @return
+    *    This schema, to add more columns to.
+    */
+   public DelimitedSchema<T> booleanColumn(String name, int index, ObjBooleanConsumer<T> setter)
+   {
+      columns.add(new AbstractColumn<T>(name, index)
+      {
+         @Override
+         void bind(T target, DelimitedStringParser record, int start, int end)
+         {
+            setter.accept(target, parseBoolean(record, start, end));
+         }
+      });
+      return this;
+   }
+   
+   /**
+    * Adds a date column for ISO dates such as 2024-12-31.
+    *
+    * @param name
+    *    The name of the column, used when reporting errors.
+    * @param index
+    *    The index of the column's section within the records.
+    * @param setter
+    *    Receives the object being bound and the column's value,
+    *    which is null when the section is empty or missing.
+    * @return
+    *    This schema, to add more columns to.
+    */
+   public DelimitedSchema<T> dateColumn(String name, int index, BiConsumer<T, LocalDate> setter)
+   {
+      return dateColumn(name, index, null, setter);
+   }
+   
+   /**
+    * Adds a date column for dates in the format passed.
+    *
+    * @param name
+    *    The name of the column, used when reporting errors.
+    * @param index
+    *    The index of the column's section within the records.
+    * @param format
+    *    The format of the dates, or null for ISO dates, which are
+    *    read straight from the record.
+    * @param setter
+    *    Receives the object being bound and the column's value,
+    *    which is null when the section is empty or missing.
+    * @return
+    *    This schema, to add more columns to.
+    */
+   public DelimitedSchema<T> dateColumn(String name, int index, DateTimeFormatter format,
+         BiConsumer<T, LocalDate> setter)
+   {
+      columns.add(new AbstractColumn<T>(name, index, true)
+      {
+         @Override
+         void bind(T target, DelimitedStringParser record, int start, int end)
+         {
+            LocalDate value = null;
+            if (start < end)
+            {
+               value = format == null ? parseDate(record, start, end)
+                     : LocalDate.parse(record.sectionView(getIndex()), format);
+            }
+            setter.accept(target, value);
+         }
+      });
+      return this;
+   }
+   
+   /**
+    * Adds a string column, receiving the section as returned by
+    * {@link DelimitedStringParser#section(int)}.
+    *
+    * @param name
+    *    The name of the column, used when reporting errors.
+    * @param index
+    *    The index of the column's section within the records.
+    * @param setter
+    *    Receives the object being bound and the column's value,
+    *    which is null when the section is missing.
+    * @return
+    *    This schema, to add more columns to.
+    */
+   public DelimitedSchema<T> stringColumn(String name, int index, BiConsumer<T, String> setter)
+   {
+      columns.add(new AbstractColumn<T>(name, index, true)
+      {
+         @Override
+         void bind(T target, DelimitedStringParser record, int start, int end)
+         {
+            setter.accept(target, start < 0 ? null : record.section(getIndex()));
+         }
+      });
+      return this;
+   }
+   
+   /**
+    * Binds a record to a new object.
+    *
+    * @param record
+    *    The record to bind.
+    * @return
+    *    The object the record was bound to.
+    * @throws DelimitedSchemaException
+    *    If any of the columns could not be bound, holding
+    *    the error for each of those columns.
+    */
+   public T bind(DelimitedStringParser record) throws DelimitedSchemaException
+   {
+      List<DelimitedColumnError> errors = new ArrayList<>(0);
+      T target = bind(record, errors);
+      if (!errors.isEmpty())
+      {
+         throw new DelimitedSchemaException(errors);
+      }
+      return target;
+   }
+   
+   /**
+    * Binds a record to a new object, adding the error for each
+    * column that could not be bound to the list passed. The columns
+    * that could not be bound are left as the new object had them.
+    *
+    * @param record
+    *    The record to bind.
+    * @param errors
+    *    The list to add the column errors to.
+    * @return
+    *    The object the record was bound to.
+    */
+   public T bind(DelimitedStringParser record, List<DelimitedColumnError> errors)
+   {
+      T target = factory.get();
+      for (AbstractColumn<T> column : columns)
+      {
+         int index = column.getIndex();
+         boolean present = index < record.getNumberOfSections();
+         int start = -1;
+         int end = -1;
+         try
+         {
+            if (present)
+            {
+               long bounds = record.valueBounds(index);
+               start = (int)(bounds >>> 32);
+               end = (int)bounds;
+            }
+            if (!column.isNullable() && start == end)
+            {
+               throw new IllegalArgumentException(REQUIRED);
+            }
+            column.bind(target, record, start, end);
+         }
+         catch (RuntimeException ex)
+         {
+            errors.add(new DelimitedColumnError(index, column.getName(),
+                  present ? record.section(index) : null, ex.getMessage()));
+         }
+      }
+      return target;
+   }
+   
+   /**
+    * Reads a whole number straight from a record.
+    *
+    * @param record
+    *    The record.
+    * @param start
+    *    The start of the value.
+    * @param end
+    *    The end of the value.
+    * @param min
+    *    The smallest value allowed.
+    * @param max
+    *    The largest value allowed.
+    * @return
+    *    The number.
+    */
+   private static long parseLong(DelimitedStringParser record, int start, int end, long min, long max)
+   {
+      int i = start;
+      boolean negative = false;
+      char first = record.valueChar(i);
+      if (first == '-' || first == '+')
+      {
+         negative = first == '-';
+         i++;
+      }
+      if (i == end)
+      {
+         throw notA("whole number");
+      }
+      
+      long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+      long result = 0;
+      while (i < end)
+      {
+         int digit = record.valueChar(i++) - '0';
+         if (digit < 0 || digit > 9)
+         {
+            throw notA("whole number");
+         }
+         if (result < limit / 10 || result * 10 < limit + digit)
+         {
+            throw outOfRange(min, max);
+         }
+         result = result * 10 - digit;
+      }
+      
+      long value = negative ? result : -result;
+      if (value < min || value > max)
+      {
+         throw outOfRange(min, max);
+      }
+      return value;
+   }
+   
+   /**
+    * Reads a double straight from a record when it is short enough
+    * to convert exactly, falling back to parsing the section.
+    *
+    * @param record
+    *    The record.
+    * @param index
+    *    The index of the section.
+    * @param start
+    *    The start of the value.
+    * @param end
+    *    The end of the value.
+    * @return
+    *    The number.
+    */
+   private static double parseDouble(DelimitedStringParser record, int index, int start, int end)
+   {
+      long scaled = scanDecimal(record, start, end, MAX_EXACT_DOUBLE_DIGITS);
+      if (scaled != Long.MIN_VALUE && (int)(scaled >>> 56) < POWERS_OF_TEN.length)
+      {
+         int scale = (int)(scaled >>> 56);
+         long unscaled = scaled & 0x00FFFFFFFFFFFFFFL;
+         double value = unscaled / POWERS_OF_TEN[scale];
+         return record.valueChar(start) == '-' ? -value : value;
+      }
+      try
+      {
+         return Double.parseDouble(record.section(index));
+      }
+      catch (NumberFormatException ex)
+      {
+         throw notA("number");
+      }
+   }
+   
+   /**
+    * Reads a decimal straight from a record when it has few enough
+    * digits to fit within a long, falling back to parsing the section.
+    *
+    * @param record
+    *    The record.
+    * @param index
+    *    The index of the section.
+    * @param start
+    *    The start of the value.
+    * @param end
+    *    The end of the value.
+    * @return
+    *    The number.
+    */
+   private static BigDecimal parseDecimal(DelimitedStringParser record, int index, int start, int end)
+   {
+      long scaled = scanDecimal(record, start, end, MAX_LONG_DIGITS);
+      if (scaled != Long.MIN_VALUE)
+      {
+         int scale = (int)(scaled >>> 56);
+         long unscaled = scaled & 0x00FFFFFFFFFFFFFFL;
+         return BigDecimal.valueOf(record.valueChar(start) == '-' ? -unscaled : unscaled, scale);
+      }
+      try
+      {
+         return new BigDecimal(record.section(index));
+      }
+      catch (NumberFormatException ex)
+      {
+         throw notA("number");
+      }
+   }
+   
+   /**
+    * Scans a plain decimal number, an optional sign followed by digits
+    * with an optional decimal point.
+    *
+    * @param record
+    *    The record.
+    * @param start
+    *    The start of the value.
+    * @param end
+    *    The end of the value.
+    * @param maxDigits
+    *    The most digits to read, which is at most 18.
+    * @return
+    *    The digits without the sign or decimal point in the low 56
+    *    bits and the number of decimal places in the high 8 bits, or
+    *    Long.MIN_VALUE if the value is not a plain number with at most
+    *    the digits passed and needs a full parse.
+    */
+   private static long scanDecimal(DelimitedStringParser record, int start, int end, int maxDigits)
+   {
+      int i = start;
+      char first = record.valueChar(i);
+      if (first == '-' || first == '+')
+      {
+         i++;
+      }
+      long unscaled = 0;
+      int digits = 0;
+      int point = -1;
+      while (i < end)
+      {
+         char c = record.valueChar(i++);
+         if (c >= '0' && c <= '9')
+         {
+            if (++digits > maxDigits)
+            {
+               return Long.MIN_VALUE;
+            }
+            unscaled = unscaled * 10 + (c - '0');
+         }
+         else if (c == '.' && point < 0)
+         {
+            point = i;
+         }
+         else
+         {
+            return Long.MIN_VALUE;
+         }
+      }
+      if (digits == 0)
+      {
+         return Long.MIN_VALUE;
+      }
+      long scale = point < 0 ? 0 : end - point;
+      return (scale << 56) | unscaled;
+   }
+   
+   /**
+    * Reads a boolean straight from a record.
+    *
+    * @param record
+    *    The record.
+    * @param start
+    *    The start of the value.
+    * @param end
+    *    The end of the value.
+    * @return
+    *    The boolean.
+    */
+   private static boolean parseBoolean(DelimitedStringParser record, int start, int end)
+   {
+      if (matches(record, start, end, "true") || matches(record, start, end, "yes")
+            || matches(record, start, end, "y") || matches(record, start, end, "1"))
+      {
+         return true;
+      }
+      if (matches(record, start, end, "false") || matches(record, start, end, "no")
+            || matches(record, start, end, "n") || matches(record, start, end, "0"))
+      {
+         return false;
+      }
+      throw notA("boolean");
+   }
+   
+   /**
+    * Reads an ISO date straight from a record.
+    *
+    * @param record
+    *    The record.
+    * @param start
+    *    The start of the value.
+    * @param end
+    *    The end of the value.
+    * @return
+    *    The date.
+    */
+   private static LocalDate parseDate(DelimitedStringParser record, int start, int end)
+   {
+      if (end - start != 10 || record.valueChar(start + 4) != '-' || record.valueChar(start + 7) != '-')
+      {
+         throw notA("date in the format yyyy-MM-dd");
+      }
+      return LocalDate.of(digits(record, start, 4), digits(record, start + 5, 2), digits(record, start + 8, 2));
+   }
+   
+   /**
+    * Reads a fixed number of digits from a record.
+    *
+    * @param record
+    *    The record.
+    * @param start
+    *    The start of the digits.
+    * @param count
+    *    The number of digits.
+    * @return
+    *    The number.
+    */
+   private static int digits(DelimitedStringParser record, int start, int count)
+   {
+      int value = 0;
+      for (int i = start; i < start + count; i++)
+      {
+         int digit = record.valueChar(i) - '0';
+         if (digit < 0 || digit > 9)
+         {
+            throw notA("date in the format yyyy-MM-dd");
+         }
+         value = value * 10 + digit;
+      }
+      return value;
+   }
+   
+   /**
+    * Checks if a value within a record matches a word, ignoring case.
+    *
+    * @param record
+    *    The record.
+    * @param start
+    *    The start of the value.
+    * @param end
+    *    The end of the value.
+    * @param word
+    *    The lower case word to match.
+    * @return
+    *    True if the value is the word.
+    */
+   private static boolean matches(DelimitedStringParser record, int start, int end, String word)
+   {
+      if (end - start != word.length())
+      {
+         return false;
+      }
+      for (int i = 0; i < word.length(); i++)
+      {
+         if (Character.toLowerCase(record.valueChar(start + i)) != word.charAt(i))
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+   
+   /**
+    * Creates the error for a value that is not of the column's type.
+    *
+    * @param type
+    *    The description of the column's type.
+    * @return
+    *    The exception to throw.
+    */
+   private static IllegalArgumentException notA(String type)
+   {
+      return new IllegalArgumentException("The value is not a " + type + ".");
+   }
+   
+   /**
+    * Creates the error for a number out of the column's range.
+    *
+    * @param min
+    *    The smallest value allowed.
+    * @param max
+    *    The largest value allowed.
+    * @return
+    *    The exception to throw.
+    */
+   private static IllegalArgumentException outOfRange(long min, long max)
+   {
+      return new IllegalArgumentException("The value is not between " + min + " and " + max + ".");
+   }
+   
+   /**
+    * Receives the object being bound and the value of a boolean 
+    * column, the boolean form of {@link ObjIntConsumer}.
+    *
+    * @author
+    *   Ben Dougall
+    * @param <T>
+    *    The type of object the records are bound to.
+    */
+   @FunctionalInterface
+   public interface ObjBooleanConsumer<T>
+   {
+      /**
+       * Passes the column's value to the object being bound.
+       *
+       * @param target
+       *    The object being bound.
+       * @param value
+       *    The column's value.
+       */
+      void accept(T target, boolean value);
+   }
+   
+   /**
+    * A column of the schema, binding a section of the records.
+    *
+    * @author
+    *   Ben Dougall
+    * @param <T>
+    *    The type of object the records are bound to.
+    */
+   private abstract static class AbstractColumn<T>
+   {
+      private final String name;
+      private final int index;
+      private final boolean nullable;
+      
+      /**
+       * Constructor, for a column that needs a value.
+       *
+       * @param name
+       *    The name of the column.
+       * @param index
+       *    The index of the column's section.
+       */
+      AbstractColumn(String name, int index)
+      {
+         this(name, index, false);
+      }
+      
+      /**
+       * Constructor, setting if the column needs a value.
+       *
+       * @param name
+       *    The name of the column.
+       * @param index
+       *    The index of the column's section.
+       * @param nullable
+       *    True if empty and missing sections are bound as null.
+       */
+      AbstractColumn(String name, int index, boolean nullable)
+      {
+         this.name = name;
+         this.index = index;
+         this.nullable = nullable;
+      }
+      
+      /**
+       * Provides the name of the column.
+       *
+       * @return
+       *    The column name.
+       */
+      String getName()
+      {
+         return name;
+      }
+      
+      /**
+       * Provides the index of the column's section.
+       *
+       * @return
+       *    The column index.
+       */
+      int getIndex()
+      {
+         return index;
+      }
+      
+      /**
+       * Checks if empty and missing sections are bound as null.
+       *
+       * @return
+       *    True if the column does not need a value.
+       */
+      boolean isNullable()
+      {
+         return nullable;
+      }
+      
+      /**
+       * Binds the column's value to the object.
+       *
+       * @param target
+       *    The object being bound.
+       * @param record
+       *    The record being bound.
+       * @param start
+       *    The start of the value within the record, or -1 if
+       *    the record does not have the section.
+       * @param end
+       *    The end of the value within the record, or -1 if
+       *    the record does not have the section.
+       */
+      abstract void bind(T target, DelimitedStringParser record, int start, int end);
+   }
+}
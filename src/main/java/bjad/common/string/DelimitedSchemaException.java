@@ -0,0 +1,44 @@
+package bjad.common.string;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exception thrown when one or more columns of a delimited
+ * record could not be bound through a {@link DelimitedSchema},
+ * holding the error for each of those columns.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public class DelimitedSchemaException extends RuntimeException
+{
+   private static final long serialVersionUID = -2630471254398123861L;
+   
+   private final List<DelimitedColumnError> errors;
+   
+   /**
+    * Constructor, setting the errors for the columns that
+    * could not be bound.
+    *
+    * @param errors
+    *    The column errors.
+    */
+   public DelimitedSchemaException(List<DelimitedColumnError> errors)
+   {
+      super(errors.toString());
+      this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+   }
+   
+   /**
+    * Provides the errors for the columns that could not be bound.
+    *
+    * @return
+    *    The column errors, which cannot be changed.
+    */
+   public List<DelimitedColumnError> getErrors()
+   {
+      return errors;
+   }
+}
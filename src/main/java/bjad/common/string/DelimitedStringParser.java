@@ -1,62 +1,153 @@
 package bjad.common.string;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 
 /**
- * Parser utility to parse a string by a delimiter, with or 
+ * Parser utility to parse a string by a delimiter, with or
  * without quotes surrounding the sections.
  *
  * @author Ben Dougall
  */
 public class DelimitedStringParser
 {
-   private List<String> sections = new ArrayList<>();
+   private final String line;
+   private final ByteBuffer bytes;
+   private final Charset charset;
+   private final int[] offsets;
+   private final int sectionCount;
+   private final String[] sections;
    
    /**
     * Creates a delimited string parser object that will
     * separate the string passed by the delimiter provided
-    * regardless of the string sections being surrounded 
+    * regardless of the string sections being surrounded
     * by quotes or not.
     *
     * @param line
-    *    The string to parse. 
-    *    
+    *    The string to parse.
+    *
     * @param delimiter
-    *    The delimiting character that splits the string 
+    *    The delimiting character that splits the string
     *    into various sections.
     */
    public DelimitedStringParser(String line, char delimiter)
    {
+      int[] found = new int[16];
+      int count = 0;
+      int start = 0;
       boolean quoteFound = false;
-      StringBuilder fieldBuilder = new StringBuilder();
       
-      for (int i = 0; i < line.length(); i++)
+      int length = line.length();
+      for (int i = 0; i < length; i++)
       {
          char c = line.charAt(i);
-         fieldBuilder.append(c);
          if (c == '"')
          {
             quoteFound = !quoteFound;
          }
-         if ((!quoteFound && c == delimiter) || i + 1 == line.length())
-         {
-            sections.add(
-                  fieldBuilder.toString().replaceAll(delimiter + "$", "")
-                     .replaceAll("^\"|\"$", "").
-                        replace("\"\"", "\"").trim());
-            fieldBuilder.setLength(0);
-         }
-         if (c == ',' && i + 1 == line.length())
+         else if (!quoteFound && c == delimiter)
          {
-            sections.add("");
+            found = addOffsets(found, count++, start, i);
+            start = i + 1;
          }
       }
+      if (length > 0)
+      {
+         found = addOffsets(found, count++, start, length);
+      }
+      
+      this.line = line;
+      this.bytes = null;
+      this.charset = null;
+      this.offsets = found;
+      this.sectionCount = count;
+      this.sections = new String[count];
+   }
+   
+   /**
+    * Creates a delimited string parser object that will separate
+    * the encoded text between the buffer's position and limit by
+    * the delimiter provided, scanning the bytes without decoding
+    * them. Only the sections that are read are decoded, so the
+    * bytes must not change while the sections are being read.
+    * The buffer's position and limit are not changed.
+    *
+    * @param bytes
+    *    The encoded text to parse.
+    * @param charset
+    *    The character set of the text, which must encode quotes,
+    *    spaces and the delimiter as single ASCII bytes, such as UTF-8.
+    * @param delimiter
+    *    The delimiting character that splits the text
+    *    into various sections, which must be an ASCII character.
+    */
+   public DelimitedStringParser(ByteBuffer bytes, Charset charset, char delimiter)
+   {
+      DelimitedByteScanner.checkCharset(charset, delimiter);
+      DelimitedByteScanner scanner = new DelimitedByteScanner(delimiter);
+      ByteBuffer buffer = DelimitedByteScanner.littleEndian(bytes);
+      if (buffer.hasRemaining())
+      {
+         scanner.scan(buffer, buffer.position(), buffer.limit(), false);
+      }
+      
+      this.line = null;
+      this.bytes = buffer;
+      this.charset = charset;
+      this.offsets = scanner.copyOffsets();
+      this.sectionCount = scanner.getSectionCount();
+      this.sections = new String[sectionCount];
+   }
+   
+   /**
+    * Creates a delimited string parser object over the bytes
+    * of sections already separated by a byte scanner.
+    *
+    * @param bytes
+    *    The buffer containing the encoded sections.
+    * @param charset
+    *    The character set of the sections.
+    * @param offsets
+    *    The start and end of each section within the buffer.
+    * @param sectionCount
+    *    The number of sections.
+    */
+   DelimitedStringParser(ByteBuffer bytes, Charset charset, int[] offsets, int sectionCount)
+   {
+      this.line = null;
+      this.bytes = bytes;
+      this.charset = charset;
+      this.offsets = offsets;
+      this.sectionCount = sectionCount;
+      this.sections = new String[sectionCount];
+   }
+   
+   /**
+    * Creates a delimited string parser object over sections
+    * already separated by a record reader.
+    *
+    * @param line
+    *    The raw text of the sections.
+    * @param offsets
+    *    The start and end of each section within the text.
+    * @param sectionCount
+    *    The number of sections.
+    */
+   DelimitedStringParser(String line, int[] offsets, int sectionCount)
+   {
+      this.line = line;
+      this.bytes = null;
+      this.charset = null;
+      this.offsets = offsets;
+      this.sectionCount = sectionCount;
+      this.sections = new String[sectionCount];
    }
    
    /**
     * Returns a section of the string as is.
-    * 
+    *
     * @param index
     *    The index of the section to retrieve.
     * @return
@@ -64,18 +155,234 @@ public class DelimitedStringParser
     */
    public String section(int index)
    {
-      return sections.get(index);
+      checkIndex(index);
+      String value = sections[index];
+      if (value == null)
+      {
+         int start = offsets[index * 2];
+         int end = offsets[index * 2 + 1];
+         value = bytes == null ? unquote(line, start, end) : DelimitedByteScanner.unquote(bytes, start, end, charset);
+         sections[index] = value;
+      }
+      return value;
+   }
+   
+   /**
+    * Returns a section of the string as a view over the
+    * string parsed, without copying the section unless it
+    * contains escaped quotes or the parser is reading bytes. The
+    * view is only valid to read, and should be converted with
+    * toString() to be kept.
+    *
+    * @param index
+    *    The index of the section to retrieve.
+    * @return
+    *    The characters found at the index passed.
+    */
+   public CharSequence sectionView(int index)
+   {
+      checkIndex(index);
+      if (sections[index] != null || bytes != null)
+      {
+         return section(index);
+      }
+      
+      int start = offsets[index * 2];
+      int end = offsets[index * 2 + 1];
+      if (end > start && line.charAt(start) == '"')
+      {
+         start++;
+      }
+      if (end > start && line.charAt(end - 1) == '"')
+      {
+         end--;
+      }
+      for (int i = start; i + 1 < end; i++)
+      {
+         if (line.charAt(i) == '"' && line.charAt(i + 1) == '"')
+         {
+            return section(index);
+         }
+      }
+      while (start < end && line.charAt(start) <= ' ')
+      {
+         start++;
+      }
+      while (end > start && line.charAt(end - 1) <= ' ')
+      {
+         end--;
+      }
+      return CharBuffer.wrap(line, start, end);
    }
    
    /**
-    * Gets the section count. 
-    * 
+    * Gets the section count.
+    *
     * @return
-    *    The number of sections following the 
+    *    The number of sections following the
     *    delimiter option.
     */
    public int getNumberOfSections()
    {
-      return sections.size();
+      return sectionCount;
+   }
+   
+   /**
+    * Finds where a section's value is within the text parsed, after
+    * removing a leading and trailing quote and trimming, but without
+    * un-escaping doubled quotes, so typed values can be read straight
+    * from the text with {@link #valueChar(int)}.
+    *
+    * @param index
+    *    The index of the section.
+    * @return
+    *    The start of the value shifted into the high 32 bits, and the
+    *    end of the value in the low 32 bits.
+    */
+   long valueBounds(int index)
+   {
+      checkIndex(index);
+      int start = offsets[index * 2];
+      int end = offsets[index * 2 + 1];
+      if (end > start && valueChar(start) == '"')
+      {
+         start++;
+      }
+      if (end > start && valueChar(end - 1) == '"')
+      {
+         end--;
+      }
+      while (start < end && valueChar(start) <= ' ')
+      {
+         start++;
+      }
+      while (end > start && valueChar(end - 1) <= ' ')
+      {
+         end--;
+      }
+      return ((long)start << 32) | end;
+   }
+   
+   /**
+    * Reads a character of the text parsed. When parsing bytes, each
+    * byte is read as a character, which is the character itself for
+    * ASCII text.
+    *
+    * @param position
+    *    The position within the text.
+    * @return
+    *    The character at the position.
+    */
+   char valueChar(int position)
+   {
+      return bytes == null ? line.charAt(position) : (char)(bytes.get(position) & 0xFF);
+   }
+   
+   /**
+    * Converts the raw text of a section into its value, removing
+    * a leading and trailing quote, un-escaping doubled quotes and
+    * trimming the result.
+    *
+    * @param text
+    *    The text containing the section.
+    * @param start
+    *    The start of the section within the text, inclusive.
+    * @param end
+    *    The end of the section within the text, exclusive.
+    * @return
+    *    The section's value.
+    */
+   static String unquote(CharSequence text, int start, int end)
+   {
+      if (end > start && text.charAt(start) == '"')
+      {
+         start++;
+      }
+      if (end > start && text.charAt(end - 1) == '"')
+      {
+         end--;
+      }
+      
+      StringBuilder sb = null;
+      int i = start;
+      while (i < end)
+      {
+         char c = text.charAt(i);
+         if (c == '"' && i + 1 < end && text.charAt(i + 1) == '"')
+         {
+            if (sb == null)
+            {
+               sb = new StringBuilder(end - start);
+               sb.append(text, start, i);
+            }
+            sb.append('"');
+            i += 2;
+         }
+         else
+         {
+            if (sb != null)
+            {
+               sb.append(c);
+            }
+            i++;
+         }
+      }
+      
+      if (sb != null)
+      {
+         return sb.toString().trim();
+      }
+      while (start < end && text.charAt(start) <= ' ')
+      {
+         start++;
+      }
+      while (end > start && text.charAt(end - 1) <= ' ')
+      {
+         end--;
+      }
+      return text.subSequence(start, end).toString();
+   }
+   
+   /**
+    * Adds the start and end of a section to the offsets,
+    * growing the offsets when they are full.
+    *
+    * @param offsets
+    *    The offsets found so far.
+    * @param index
+    *    The index of the section.
+    * @param start
+    *    The start of the section, inclusive.
+    * @param end
+    *    The end of the section, exclusive.
+    * @return
+    *    The offsets, which is a new array if they had to grow.
+    */
+   static int[] addOffsets(int[] offsets, int index, int start, int end)
+   {
+      int[] result = offsets;
+      if (index * 2 + 1 >= result.length)
+      {
+         int[] grown = new int[result.length * 2];
+         System.arraycopy(result, 0, grown, 0, result.length);
+         result = grown;
+      }
+      result[index * 2] = start;
+      result[index * 2 + 1] = end;
+      return result;
+   }
+   
+   /**
+    * Checks the index passed is one of the sections.
+    *
+    * @param index
+    *    The index of the section.
+    */
+   private void checkIndex(int index)
+   {
+      if (index < 0 || index >= sectionCount)
+      {
+         throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + sectionCount);
+      }
    }
 }
@@ -1,10 +1,25 @@
 package bjad.common.string;
 
-import java.security.spec.KeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.UUID;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.IvParameterSpec;
@@ -14,12 +29,60 @@ import javax.crypto.spec.SecretKeySpec;
 /**
  * Wrapper for keeping strings secured by encrypting them in memory, or 
  * to decrypt/encrypt strings from setting files or other external sources.
+ * <p>
+ * Keys derived from a set key and salt are cached for the process, 
+ * keyed by a keyed hash of the key and salt rather than the values 
+ * themselves, so creating many secure strings with the same key and
+ * salt only derives the key once. Randomized keys are generated 
+ * directly rather than derived, and ciphers are reused by each object
+ * until it is closed.
+ * <p>
+ * Batches of values sharing a key and salt can be encrypted or 
+ * decrypted in parallel with {@link #encryptAll} and 
+ * {@link #decryptAll}, deriving the key once, with an error for 
+ * each value that fails rather than failing the batch.
+ * <p>
+ * The encrypted value can be kept off the heap in a direct buffer with
+ * {@link #setOffHeap(boolean)}, and the value can be read into and set
+ * from character arrays or buffers the caller clears, so no strings
+ * are created. Closing the object clears the encrypted value.
  *
  * @author 
  *   Ben Dougall
  */
-public class SecureString
+public class SecureString implements AutoCloseable
 {   
+   private static final int KEY_ITERATIONS = 65536;
+   private static final int KEY_LENGTH = 256;
+   private static final int KEY_CACHE_SIZE = 256;
+   private static final String CACHE_HASH_ALGORITHM = "HmacSHA256";
+   private static final String DEFAULT_CIPHER_ALGORITHM = "AES/CBC/PKCS5PADDING";
+   private static final SecureRandom RANDOM = new SecureRandom();
+   private static final byte[] CACHE_HASH_KEY = new byte[32];
+   private static final Map<String, byte[]> KEY_CACHE = 
+         new LinkedHashMap<String, byte[]>(16, 0.75f, true)
+   {
+      private static final long serialVersionUID = -1385296650275193764L;
+      
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest)
+      {
+         if (size() > KEY_CACHE_SIZE)
+         {
+            Arrays.fill(eldest.getValue(), (byte)0);
+            return true;
+         }
+         return false;
+      }
+   };
+   private static final ThreadLocal<ByteBuffer> SCRATCH = new ThreadLocal<>();
+   private static final int MINIMUM_SCRATCH_SIZE = 256;
+   
+   static
+   {
+      RANDOM.nextBytes(CACHE_HASH_KEY);
+   }
+   
    /**
     * The Algorithm to use for generating the secret key to
     * encrypt the string in the object.
@@ -41,8 +104,16 @@ public class SecureString
    
    private byte[] encryptedValue;
    
+   private ByteBuffer offHeapValue = null;
+   
+   private boolean offHeap = false;
+   
+   private boolean closed = false;
+   
    private SecretKeySpec secretKey = null;
    
+   private final Queue<Cipher> ciphers = new ConcurrentLinkedQueue<>();
+   
    /**
     * Creates an empty secure string with a randomized
     * key and salt value. 
@@ -111,24 +182,35 @@ public class SecureString
     *    if coming from an external source, the calling function 
     *    should be catching for this exception in case the value
     *    set was invalid. 
+    * @throws IllegalStateException
+    *    If the object has been closed.
     */
    public String getString() throws SecureStringException
    {
-      if (encryptedValue == null)
+      checkOpen();
+      if (isEmpty())
       {
          return "";
       }
       
+      ByteBuffer plain = null;
       try
       {
-         Cipher cipher = Cipher.getInstance(getStringFromCharArray(cipherAlgorithm, "AES/CBC/PKCS5PADDING"));
-         cipher.init(Cipher.DECRYPT_MODE, secretKey, ivspec);
-         return new String(cipher.doFinal(encryptedValue));
+         plain = decrypt();
+         byte[] bytes = new byte[plain.remaining()];
+         plain.get(bytes);
+         String result = new String(bytes, StandardCharsets.UTF_8);
+         Arrays.fill(bytes, (byte)0);
+         return result;
       }      
       catch (Exception ex)
       {
          throw new SecureStringException(ex);
       }
+      finally
+      {
+         wipe(plain);
+      }
    }
    
    /**
@@ -138,25 +220,203 @@ public class SecureString
     *    The value to store securely. 
     * @throws SecureStringException
     *    Any encryption exceptions will be thrown.
+    * @throws IllegalStateException
+    *    If the object has been closed.
     */
    public void setString(String value) throws SecureStringException
    {
+      checkOpen();
       if (value == null || value.trim().isEmpty())
       {
-         encryptedValue = null;
+         clearValue();
+         return;
+      }
+      
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      try
+      {
+         encrypt(ByteBuffer.wrap(bytes));
+      }      
+      catch (Exception ex)
+      {
+         throw new SecureStringException(ex);
+      }
+      finally
+      {
+         Arrays.fill(bytes, (byte)0);
+      }
+   }
+   
+   /**
+    * Provides the characters stored securely within the object
+    * in a new array, which the caller should clear once done with.
+    *  
+    * @return
+    *    The characters stored in the object, or an empty array if
+    *    nothing is stored. 
+    * @throws SecureStringException
+    *    Any encryption exceptions will be thrown.
+    * @throws IllegalStateException
+    *    If the object has been closed.
+    */
+   public char[] getChars() throws SecureStringException
+   {
+      checkOpen();
+      if (isEmpty())
+      {
+         return new char[0];
+      }
+      
+      ByteBuffer plain = null;
+      CharBuffer chars = null;
+      try
+      {
+         plain = decrypt();
+         chars = CharBuffer.allocate(plain.remaining());
+         decode(plain, chars);
+         return Arrays.copyOf(chars.array(), chars.position());
+      }      
+      catch (Exception ex)
+      {
+         throw new SecureStringException(ex);
+      }
+      finally
+      {
+         wipe(plain);
+         if (chars != null)
+         {
+            Arrays.fill(chars.array(), '\0');
+         }
+      }
+   }
+   
+   /**
+    * Decrypts the characters stored securely within the object into
+    * the array passed, from its start, so no string is created.
+    *  
+    * @param destination
+    *    The array to write the characters to, which the caller should
+    *    clear once done with.
+    * @return
+    *    The number of characters written. 
+    * @throws SecureStringException
+    *    Any encryption exceptions will be thrown, including when the
+    *    array is too small, in which case nothing is written. 
+    * @throws IllegalStateException
+    *    If the object has been closed.
+    */
+   public int getChars(char[] destination) throws SecureStringException
+   {
+      return getChars(CharBuffer.wrap(destination));
+   }
+   
+   /**
+    * Decrypts the characters stored securely within the object into
+    * the buffer passed, from its position, so no string is created.
+    *  
+    * @param destination
+    *    The buffer to write the characters to, which the caller should
+    *    clear once done with.
+    * @return
+    *    The number of characters written, with the position of the
+    *    buffer moved past them. 
+    * @throws SecureStringException
+    *    Any encryption exceptions will be thrown, including when the
+    *    buffer is too small, in which case nothing is written. 
+    * @throws IllegalStateException
+    *    If the object has been closed.
+    */
+   public int getChars(CharBuffer destination) throws SecureStringException
+   {
+      checkOpen();
+      if (isEmpty())
+      {
+         return 0;
+      }
+      
+      int start = destination.position();
+      ByteBuffer plain = null;
+      try
+      {
+         plain = decrypt();
+         decode(plain, destination);
+         return destination.position() - start;
+      }      
+      catch (Exception ex)
+      {
+         for (int i = start; i < destination.position(); i++)
+         {
+            destination.put(i, '\0');
+         }
+         destination.position(start);
+         throw new SecureStringException(ex);
+      }
+      finally
+      {
+         wipe(plain);
+      }
+   }
+   
+   /**
+    * Sets the characters that are to be stored securely in
+    * the object, without creating a string. 
+    * 
+    * @param value
+    *    The characters to store securely, which the caller can 
+    *    clear once set. 
+    * @throws SecureStringException
+    *    Any encryption exceptions will be thrown.
+    * @throws IllegalStateException
+    *    If the object has been closed.
+    */
+   public void setChars(char[] value) throws SecureStringException
+   {
+      setChars(value == null ? null : CharBuffer.wrap(value));
+   }
+   
+   /**
+    * Sets the characters remaining in the buffer passed as the
+    * value to store securely in the object, without creating a
+    * string. The position of the buffer is not changed.
+    * 
+    * @param value
+    *    The characters to store securely, which the caller can 
+    *    clear once set. 
+    * @throws SecureStringException
+    *    Any encryption exceptions will be thrown.
+    * @throws IllegalStateException
+    *    If the object has been closed.
+    */
+   public void setChars(CharBuffer value) throws SecureStringException
+   {
+      checkOpen();
+      if (value == null || !value.hasRemaining())
+      {
+         clearValue();
          return;
       }
       
+      ByteBuffer plain = scratch((int)(value.remaining() * (double)StandardCharsets.UTF_8.newEncoder().maxBytesPerChar()));
       try
       {
-         Cipher cipher = Cipher.getInstance(getStringFromCharArray(cipherAlgorithm, "AES/CBC/PKCS5PADDING"));
-         cipher.init(Cipher.ENCRYPT_MODE, secretKey, ivspec);
-         encryptedValue = cipher.doFinal(value.getBytes("UTF-8"));
+         CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+         CoderResult result = encoder.encode(value.duplicate(), plain, true);
+         if (!result.isUnderflow())
+         {
+            result.throwException();
+         }
+         encoder.flush(plain);
+         plain.flip();
+         encrypt(plain);
       }      
       catch (Exception ex)
       {
          throw new SecureStringException(ex);
       }
+      finally
+      {
+         wipe(plain);
+      }
    }
    
    /**
@@ -166,14 +426,26 @@ public class SecureString
     * @return 
     *    The base 64 string of the encrypted value, or empty
     *    string if nothing is stored. 
+    * @throws IllegalStateException
+    *    If the object has been closed.
     */
    public String getBase64String()
    {
-      if (encryptedValue == null || encryptedValue.length == 0)
+      checkOpen();
+      if (isEmpty())
       {
          return "";
       }
-      return Base64.getEncoder().encodeToString(encryptedValue);
+      if (encryptedValue != null)
+      {
+         return Base64.getEncoder().encodeToString(encryptedValue);
+      }
+      
+      byte[] bytes = new byte[offHeapValue.remaining()];
+      offHeapValue.duplicate().get(bytes);
+      String result = Base64.getEncoder().encodeToString(bytes);
+      Arrays.fill(bytes, (byte)0);
+      return result;
    }
    
    /**
@@ -185,27 +457,498 @@ public class SecureString
     * @return
     *    True if the base 64 string could be decoded and 
     *    stored, false otherwise.
+    * @throws IllegalStateException
+    *    If the object has been closed.
     */
    public boolean setFromBase64String(String base64String)
    {
-      if (base64String == null || base64String.trim().isEmpty())
+      checkOpen();
+      clearValue();
+      if (base64String != null && !base64String.trim().isEmpty())
       {
-         encryptedValue = null;
+         try
+         {
+            storeValue(Base64.getDecoder().decode(base64String));
+         }
+         catch (Exception ex)
+         {
+            clearValue();
+         }
       }
-      else
+      return !isEmpty();
+   }
+   
+   /**
+    * Checks if the encrypted value is kept off the heap in a direct
+    * buffer.
+    * 
+    * @return
+    *    True if the encrypted value is kept off the heap.
+    */
+   public boolean isOffHeap()
+   {
+      return offHeap;
+   }
+   
+   /**
+    * Sets if the encrypted value is kept off the heap in a direct
+    * buffer, which is cleared when replaced or when the object is 
+    * closed, moving the value currently stored and clearing its old 
+    * copy.
+    * 
+    * @param offHeap
+    *    True to keep the encrypted value off the heap, false (the 
+    *    default) to keep it in an array.
+    * @throws IllegalStateException
+    *    If the object has been closed.
+    */
+   public void setOffHeap(boolean offHeap)
+   {
+      checkOpen();
+      if (this.offHeap == offHeap)
+      {
+         return;
+      }
+      
+      byte[] bytes = null;
+      if (offHeapValue != null)
+      {
+         bytes = new byte[offHeapValue.remaining()];
+         offHeapValue.duplicate().get(bytes);
+      }
+      else if (encryptedValue != null)
+      {
+         bytes = encryptedValue.clone();
+      }
+      clearValue();
+      this.offHeap = offHeap;
+      if (bytes != null)
+      {
+         storeValue(bytes);
+      }
+   }
+   
+   /**
+    * Checks if the object has been closed.
+    * 
+    * @return
+    *    True if the object has been closed.
+    */
+   public boolean isClosed()
+   {
+      return closed;
+   }
+   
+   /**
+    * Closes the object, clearing the encrypted value and releasing
+    * the key and the ciphers initialized with it, after which the 
+    * value can no longer be read or set.
+    */
+   @Override
+   public void close()
+   {
+      clearValue();
+      secretKey = null;
+      closed = true;
+      ciphers.clear();
+   }
+   
+   /**
+    * Encrypts a batch of values with a shared key and salt in 
+    * parallel, deriving the key once, providing the base 64 string
+    * of each encrypted value. A value that cannot be encrypted is 
+    * returned as null with an error added for it, rather than 
+    * failing the batch.
+    * 
+    * @param key
+    *    The encryption key to use, which must not be blank.
+    * @param salt
+    *    The salting value to use, which must not be blank.
+    * @param values
+    *    The values to encrypt.
+    * @param errors
+    *    The list to add an error to for each value that could not
+    *    be encrypted, in value order, or null to ignore the errors.
+    * @return
+    *    The base 64 strings of the encrypted values, in the same 
+    *    order as the values, with empty strings for null or blank 
+    *    values.
+    * @throws IllegalArgumentException
+    *    If the key or salt is null or blank, as the values could never
+    *    be decrypted with a randomized key or salt.
+    * @throws SecureStringException
+    *    Any exceptions initializing the encryption objects will be thrown.
+    */
+   public static String[] encryptAll(String key, String salt, String[] values, List<SecureStringError> errors)
+   {
+      checkBatchKey(key, salt);
+      try (SecureString secureString = new SecureString(key, salt))
+      {
+         return processAll(values, errors, value -> 
+         {
+            if (value == null || value.trim().isEmpty())
+            {
+               return "";
+            }
+            Cipher cipher = secureString.getCipher(Cipher.ENCRYPT_MODE);
+            try
+            {
+               return Base64.getEncoder().encodeToString(cipher.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+            }
+            finally
+            {
+               secureString.releaseCipher(cipher);
+            }
+         });
+      }
+   }
+   
+   /**
+    * Decrypts a batch of base 64 values with a shared key and salt in 
+    * parallel, deriving the key once. A value that cannot be decrypted
+    * is returned as null with an error added for it, rather than 
+    * failing the batch.
+    * 
+    * @param key
+    *    The encryption key to use, which must not be blank.
+    * @param salt
+    *    The salting value to use, which must not be blank.
+    * @param base64Values
+    *    The base 64 strings of the encrypted values.
+    * @param errors
+    *    The list to add an error to for each value that could not
+    *    be decrypted, in value order, or null to ignore the errors.
+    * @return
+    *    The decrypted values, in the same order as the base 64 strings,
+    *    with empty strings for null or blank base 64 strings.
+    * @throws IllegalArgumentException
+    *    If the key or salt is null or blank.
+    * @throws SecureStringException
+    *    Any exceptions initializing the encryption objects will be thrown.
+    */
+   public static String[] decryptAll(String key, String salt, String[] base64Values, List<SecureStringError> errors)
+   {
+      checkBatchKey(key, salt);
+      try (SecureString secureString = new SecureString(key, salt))
+      {
+         return processAll(base64Values, errors, value -> 
+         {
+            if (value == null || value.trim().isEmpty())
+            {
+               return "";
+            }
+            Cipher cipher = secureString.getCipher(Cipher.DECRYPT_MODE);
+            byte[] decrypted;
+            try
+            {
+               decrypted = cipher.doFinal(Base64.getDecoder().decode(value));
+            }
+            finally
+            {
+               secureString.releaseCipher(cipher);
+            }
+            String result = new String(decrypted, StandardCharsets.UTF_8);
+            Arrays.fill(decrypted, (byte)0);
+            return result;
+         });
+      }
+   }
+   
+   /**
+    * Checks the key and salt for a batch are set, as a randomized key
+    * or salt would never match the one the values are encrypted with.
+    * 
+    * @param key
+    *    The encryption key to check.
+    * @param salt
+    *    The salting value to check.
+    * @throws IllegalArgumentException
+    *    If the key or salt is null or blank.
+    */
+   private static void checkBatchKey(String key, String salt)
+   {
+      if (key == null || key.trim().isEmpty() || salt == null || salt.trim().isEmpty())
+      {
+         throw new IllegalArgumentException("A key and salt must be set to encrypt or decrypt a batch of values");
+      }
+   }
+   
+   /**
+    * Applies the operation to each value in parallel, collecting
+    * the errors for the values that fail.
+    * 
+    * @param values
+    *    The values to process.
+    * @param errors
+    *    The list to add the errors to, or null to ignore them.
+    * @param operation
+    *    The operation to apply to each value.
+    * @return
+    *    The results, with null for the values that failed.
+    */
+   private static String[] processAll(String[] values, List<SecureStringError> errors, BatchOperation operation)
+   {
+      String[] results = new String[values.length];
+      SecureStringError[] failures = new SecureStringError[values.length];
+      IntStream.range(0, values.length).parallel().forEach(i -> 
       {
          try
          {
-            encryptedValue = Base64.getDecoder().decode(base64String);
+            results[i] = operation.apply(values[i]);
          }
          catch (Exception ex)
          {
-            encryptedValue = null;
+            failures[i] = new SecureStringError(i, new SecureStringException(ex));
+         }
+      });
+      
+      if (errors != null)
+      {
+         for (SecureStringError failure : failures)
+         {
+            if (failure != null)
+            {
+               errors.add(failure);
+            }
          }
       }
-      return encryptedValue != null && encryptedValue.length > 0;
+      return results;
    }
-
+   
+   /**
+    * Provides a cipher initialized with the key for the object, reusing
+    * one released by an earlier call when there is one. The ciphers are
+    * only kept by the object, and are dropped when it is closed, so the 
+    * key does not outlive the object in a cipher held by a thread.
+    * 
+    * @param mode
+    *    The cipher mode, either Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE.
+    * @return
+    *    The initialized cipher, to pass to {@link #releaseCipher(Cipher)}
+    *    once done with.
+    * @throws GeneralSecurityException
+    *    Any exceptions creating or initializing the cipher.
+    */
+   private Cipher getCipher(int mode) throws GeneralSecurityException
+   {
+      String transformation = getStringFromCharArray(cipherAlgorithm, DEFAULT_CIPHER_ALGORITHM);
+      Cipher cipher = ciphers.poll();
+      if (cipher == null || !cipher.getAlgorithm().equals(transformation))
+      {
+         cipher = Cipher.getInstance(transformation);
+      }
+      cipher.init(mode, secretKey, ivspec);
+      return cipher;
+   }
+   
+   /**
+    * Hands a cipher back to the object to be reused, unless the object
+    * has been closed.
+    * 
+    * @param cipher
+    *    The cipher provided by {@link #getCipher(int)}.
+    */
+   private void releaseCipher(Cipher cipher)
+   {
+      ciphers.offer(cipher);
+      if (closed)
+      {
+         ciphers.clear();
+      }
+   }
+   
+   /**
+    * Encrypts the bytes remaining in the buffer passed, replacing the
+    * encrypted value stored.
+    * 
+    * @param plain
+    *    The bytes to encrypt.
+    * @throws GeneralSecurityException
+    *    Any exceptions encrypting the bytes.
+    */
+   private void encrypt(ByteBuffer plain) throws GeneralSecurityException
+   {
+      Cipher cipher = getCipher(Cipher.ENCRYPT_MODE);
+      int size = cipher.getOutputSize(plain.remaining());
+      ByteBuffer encrypted = offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+      try
+      {
+         cipher.doFinal(plain, encrypted);
+      }
+      finally
+      {
+         releaseCipher(cipher);
+      }
+      encrypted.flip();
+      
+      clearValue();
+      if (offHeap)
+      {
+         offHeapValue = encrypted;
+      }
+      else
+      {
+         encryptedValue = encrypted.remaining() == size 
+               ? encrypted.array() : Arrays.copyOf(encrypted.array(), encrypted.remaining());
+      }
+   }
+   
+   /**
+    * Decrypts the encrypted value stored into the scratch buffer for 
+    * the thread, which must be wiped once done with.
+    * 
+    * @return
+    *    The scratch buffer, holding the decrypted bytes.
+    * @throws GeneralSecurityException
+    *    Any exceptions decrypting the bytes.
+    */
+   private ByteBuffer decrypt() throws GeneralSecurityException
+   {
+      ByteBuffer encrypted = offHeapValue != null ? offHeapValue.duplicate() : ByteBuffer.wrap(encryptedValue);
+      Cipher cipher = getCipher(Cipher.DECRYPT_MODE);
+      ByteBuffer plain = scratch(cipher.getOutputSize(encrypted.remaining()));
+      try
+      {
+         cipher.doFinal(encrypted, plain);
+      }
+      finally
+      {
+         releaseCipher(cipher);
+      }
+      plain.flip();
+      return plain;
+   }
+   
+   /**
+    * Decodes UTF-8 bytes into the buffer passed.
+    * 
+    * @param plain
+    *    The bytes to decode.
+    * @param destination
+    *    The buffer to write the characters to.
+    * @throws CharacterCodingException
+    *    If the bytes are not valid UTF-8, or the buffer is too small.
+    */
+   private static void decode(ByteBuffer plain, CharBuffer destination) throws CharacterCodingException
+   {
+      CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+      CoderResult result = decoder.decode(plain, destination, true);
+      if (result.isUnderflow())
+      {
+         result = decoder.flush(destination);
+      }
+      if (!result.isUnderflow())
+      {
+         result.throwException();
+      }
+   }
+   
+   /**
+    * Stores the encrypted bytes passed as the value, copying them
+    * off the heap and clearing the array when kept off the heap.
+    * 
+    * @param bytes
+    *    The encrypted bytes.
+    */
+   private void storeValue(byte[] bytes)
+   {
+      if (bytes.length == 0)
+      {
+         return;
+      }
+      if (offHeap)
+      {
+         offHeapValue = ByteBuffer.allocateDirect(bytes.length);
+         offHeapValue.put(bytes).flip();
+         Arrays.fill(bytes, (byte)0);
+      }
+      else
+      {
+         encryptedValue = bytes;
+      }
+   }
+   
+   /**
+    * Clears the encrypted value stored, overwriting its bytes.
+    */
+   private void clearValue()
+   {
+      if (encryptedValue != null)
+      {
+         Arrays.fill(encryptedValue, (byte)0);
+         encryptedValue = null;
+      }
+      if (offHeapValue != null)
+      {
+         wipe(offHeapValue);
+         offHeapValue = null;
+      }
+   }
+   
+   /**
+    * Checks if no encrypted value is stored.
+    * 
+    * @return
+    *    True if no value is stored.
+    */
+   private boolean isEmpty()
+   {
+      return encryptedValue == null && offHeapValue == null;
+   }
+   
+   /**
+    * Checks the object has not been closed.
+    * 
+    * @throws IllegalStateException
+    *    If the object has been closed.
+    */
+   private void checkOpen()
+   {
+      if (closed)
+      {
+         throw new IllegalStateException("The secure string has been closed");
+      }
+   }
+   
+   /**
+    * Provides the direct scratch buffer for the thread, cleared and
+    * with at least the capacity passed.
+    * 
+    * @param capacity
+    *    The capacity needed.
+    * @return
+    *    The scratch buffer.
+    */
+   private static ByteBuffer scratch(int capacity)
+   {
+      ByteBuffer buffer = SCRATCH.get();
+      if (buffer == null || buffer.capacity() < capacity)
+      {
+         buffer = ByteBuffer.allocateDirect(Math.max(capacity, MINIMUM_SCRATCH_SIZE));
+         SCRATCH.set(buffer);
+      }
+      buffer.clear();
+      return buffer;
+   }
+   
+   /**
+    * Overwrites all the bytes of the buffer passed with zeros.
+    * 
+    * @param buffer
+    *    The buffer to wipe, or null to do nothing.
+    */
+   private static void wipe(ByteBuffer buffer)
+   {
+      if (buffer != null)
+      {
+         buffer.clear();
+         for (int i = 0; i < buffer.capacity(); i++)
+         {
+            buffer.put(i, (byte)0);
+         }
+      }
+   }
+   
    private String getStringFromCharArray(char[] val, String defaultValue)
    {
       String result = defaultValue;
@@ -230,46 +973,136 @@ public class SecureString
    {
       try
       {
-         char[] keyArray;
+         String method = getStringFromCharArray(secretKeyFactoryAlgorithm, "PBKDF2WithHmacSHA256");
+         byte[] keyBytes;
          
          if (key == null || key.trim().isEmpty())
          {
-            keyArray = UUID.randomUUID().toString().toCharArray();
+            // a random key gains nothing from being derived, but the 
+            // factory is still checked so a bad algorithm is reported.
+            SecretKeyFactory.getInstance(method);
+            keyBytes = new byte[KEY_LENGTH / 8];
+            RANDOM.nextBytes(keyBytes);
          }
-         else
+         else if (salt == null || salt.trim().isEmpty())
          {
-            keyArray = key.toCharArray();
+            keyBytes = deriveKey(method, key, String.valueOf(System.nanoTime()));
          }
-         
-         String saltValue = 
-               (salt == null || salt.trim().isEmpty()) ? 
-                     String.valueOf(System.nanoTime()) : 
-                     salt;
-         
-         String method = getStringFromCharArray(secretKeyFactoryAlgorithm, "PBKDF2WithHmacSHA256");
-      
-         SecretKeyFactory factory = SecretKeyFactory.getInstance(method);
-         KeySpec spec = new PBEKeySpec(keyArray, saltValue.getBytes(), 65536, 256);
-         SecretKey temp = factory.generateSecret(spec);
-         
-         method = getStringFromCharArray(encryptionAlgorithm, "AES");
-         secretKey = new SecretKeySpec(temp.getEncoded(), method);
-         
-         try
+         else
          {
-            if (!temp.isDestroyed())
+            String cacheKey = getCacheKey(method, key, salt);
+            synchronized (KEY_CACHE)
             {
-               temp.destroy();
+               keyBytes = KEY_CACHE.get(cacheKey);
+               keyBytes = keyBytes == null ? null : keyBytes.clone();
+            }
+            if (keyBytes == null)
+            {
+               keyBytes = deriveKey(method, key, salt);
+               synchronized (KEY_CACHE)
+               {
+                  KEY_CACHE.put(cacheKey, keyBytes.clone());
+               }
             }
          }
-         catch (Exception ignore) 
-         {
-            // Do nothing, purely cleanup.
-         }
+         
+         secretKey = new SecretKeySpec(keyBytes, getStringFromCharArray(encryptionAlgorithm, "AES"));
+         Arrays.fill(keyBytes, (byte)0);
       } 
       catch (Exception ex)
       {
          throw new SecureStringException(ex);
       }
    }
+   
+   /**
+    * Removes all the derived keys from the process wide cache,
+    * clearing their values.
+    */
+   public static void clearKeyCache()
+   {
+      synchronized (KEY_CACHE)
+      {
+         for (byte[] keyBytes : KEY_CACHE.values())
+         {
+            Arrays.fill(keyBytes, (byte)0);
+         }
+         KEY_CACHE.clear();
+      }
+   }
+   
+   /**
+    * Derives the key bytes from the key and salt.
+    * 
+    * @param method
+    *    The secret key factory algorithm.
+    * @param key
+    *    The encryption key to use.
+    * @param salt
+    *    The salting value to use.
+    * @return
+    *    The derived key bytes.
+    * @throws GeneralSecurityException
+    *    Any exceptions deriving the key.
+    */
+   private static byte[] deriveKey(String method, String key, String salt) throws GeneralSecurityException
+   {
+      SecretKeyFactory factory = SecretKeyFactory.getInstance(method);
+      PBEKeySpec spec = new PBEKeySpec(key.toCharArray(), salt.getBytes(), KEY_ITERATIONS, KEY_LENGTH);
+      SecretKey temp = factory.generateSecret(spec);
+      spec.clearPassword();
+      byte[] keyBytes = temp.getEncoded();
+      
+      try
+      {
+         if (!temp.isDestroyed())
+         {
+            temp.destroy();
+         }
+      }
+      catch (Exception ignore) 
+      {
+         // Do nothing, purely cleanup.
+      }
+      return keyBytes;
+   }
+   
+   /**
+    * Provides the cache key for a derived key, which is a hash of 
+    * the algorithm, key and salt keyed with a random value for the
+    * process, so the cache does not hold the key or salt, or a hash
+    * of them that could be checked against guesses outside the process.
+    * 
+    * @param method
+    *    The secret key factory algorithm.
+    * @param key
+    *    The encryption key to use.
+    * @param salt
+    *    The salting value to use.
+    * @return
+    *    The cache key.
+    * @throws GeneralSecurityException
+    *    Any exceptions creating the hash.
+    */
+   private static String getCacheKey(String method, String key, String salt) throws GeneralSecurityException
+   {
+      Mac mac = Mac.getInstance(CACHE_HASH_ALGORITHM);
+      mac.init(new SecretKeySpec(CACHE_HASH_KEY, CACHE_HASH_ALGORITHM));
+      for (String part : new String[] {method, key, salt})
+      {
+         byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+         mac.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+         mac.update(bytes);
+      }
+      return Base64.getEncoder().encodeToString(mac.doFinal());
+   }
+   
+   /**
+    * An encryption or decryption applied to each value of a batch.
+    */
+   @FunctionalInterface
+   private interface BatchOperation
+   {
+      String apply(String value) throws Exception;
+   }
 }
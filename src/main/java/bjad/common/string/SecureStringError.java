@@ -0,0 +1,68 @@
+package bjad.common.string;
+
+/**
+ * An error encrypting or decrypting one value of a batch
+ * through {@link SecureString#encryptAll} or 
+ * {@link SecureString#decryptAll}.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public final class SecureStringError
+{
+   private final int index;
+   private final SecureStringException exception;
+   
+   /**
+    * Constructor, setting the details of the error.
+    *
+    * @param index
+    *    The index of the value within the batch.
+    * @param exception
+    *    The exception encrypting or decrypting the value.
+    */
+   public SecureStringError(int index, SecureStringException exception)
+   {
+      this.index = index;
+      this.exception = exception;
+   }
+   
+   /**
+    * Provides the index of the value within the batch.
+    *
+    * @return
+    *    The value index.
+    */
+   public int getIndex()
+   {
+      return index;
+   }
+   
+   /**
+    * Provides the exception encrypting or decrypting the value.
+    *
+    * @return
+    *    The exception.
+    */
+   public SecureStringException getException()
+   {
+      return exception;
+   }
+   
+   /**
+    * Provides the description of the error.
+    *
+    * @return
+    *    The error message.
+    */
+   public String getMessage()
+   {
+      return exception.getMessage();
+   }
+   
+   @Override
+   public String toString()
+   {
+      return "Value " + index + ": " + getMessage();
+   }
+}
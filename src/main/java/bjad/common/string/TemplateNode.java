@@ -0,0 +1,28 @@
+package bjad.common.string;
+
+import java.io.IOException;
+import java.util.Deque;
+
+/**
+ * Part of a template compiled into sections, which writes its part
+ * of the text to a sink using the data in scope.
+ *
+ * @author
+ *   Ben Dougall
+ */
+interface TemplateNode
+{
+   /**
+    * Writes the node's part of the text to the sink.
+    *
+    * @param text
+    *    The template text the node was compiled from.
+    * @param scopes
+    *    The data in scope, innermost first.
+    * @param sink
+    *    Where to write the text.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text.
+    */
+   void render(String text, Deque<Object> scopes, TemplateSink sink) throws IOException;
+}
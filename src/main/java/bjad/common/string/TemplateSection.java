@@ -0,0 +1,200 @@
+package bjad.common.string;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A section of a template compiled into sections, which renders the
+ * text within it once for each item of a list or array, once for any
+ * other value that is set, or for an inverted section, once when the 
+ * value is not set. A value is not set when it is missing, null, 
+ * false, or an empty list or array.
+ *
+ * @author
+ *   Ben Dougall
+ */
+final class TemplateSection implements TemplateNode
+{
+   private static final Object NO_VALUE = new Object();
+   
+   private final String name;
+   private final boolean inverted;
+   private final List<TemplateNode> children = new ArrayList<>();
+   
+   /**
+    * Constructor, setting the value the section is rendered for.
+    *
+    * @param name
+    *    The name of the value the section is rendered for, or null
+    *    for the whole template.
+    * @param inverted
+    *    True to render the section only when the value is not set.
+    */
+   TemplateSection(String name, boolean inverted)
+   {
+      this.name = name;
+      this.inverted = inverted;
+   }
+   
+   /**
+    * Provides the name of the value the section is rendered for.
+    *
+    * @return
+    *    The name, or null for the whole template.
+    */
+   String getName()
+   {
+      return name;
+   }
+   
+   /**
+    * Adds a part of the text within the section.
+    *
+    * @param node
+    *    The part to add.
+    */
+   void add(TemplateNode node)
+   {
+      children.add(node);
+   }
+   
+   @Override
+   public void render(String text, Deque<Object> scopes, TemplateSink sink) throws IOException
+   {
+      if (name == null)
+      {
+         renderChildren(text, scopes, sink);
+         return;
+      }
+      
+      Object value = lookup(scopes, name);
+      if (inverted)
+      {
+         if (!isSet(value))
+         {
+            renderChildren(text, scopes, sink);
+         }
+      }
+      else if (value instanceof Iterable)
+      {
+         for (Object item : (Iterable<?>)value)
+         {
+            renderItem(text, scopes, sink, item);
+         }
+      }
+      else if (value != null && value.getClass().isArray())
+      {
+         int length = Array.getLength(value);
+         for (int i = 0; i < length; i++)
+         {
+            renderItem(text, scopes, sink, Array.get(value, i));
+         }
+      }
+      else if (isSet(value))
+      {
+         renderItem(text, scopes, sink, value);
+      }
+   }
+   
+   /**
+    * Renders the text within the section with an item in scope.
+    *
+    * @param text
+    *    The template text.
+    * @param scopes
+    *    The data in scope, innermost first.
+    * @param sink
+    *    Where to write the text.
+    * @param item
+    *    The item to bring into scope.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text.
+    */
+   private void renderItem(String text, Deque<Object> scopes, TemplateSink sink, Object item) throws IOException
+   {
+      scopes.push(item == null ? NO_VALUE : item);
+      try
+      {
+         renderChildren(text, scopes, sink);
+      }
+      finally
+      {
+         scopes.pop();
+      }
+   }
+   
+   /**
+    * Renders the text within the section.
+    *
+    * @param text
+    *    The template text.
+    * @param scopes
+    *    The data in scope, innermost first.
+    * @param sink
+    *    Where to write the text.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text.
+    */
+   private void renderChildren(String text, Deque<Object> scopes, TemplateSink sink) throws IOException
+   {
+      for (TemplateNode child : children)
+      {
+         child.render(text, scopes, sink);
+      }
+   }
+   
+   /**
+    * Finds a value by name within the data in scope, using the 
+    * innermost map holding the name, with the name "." being the 
+    * innermost item itself.
+    *
+    * @param scopes
+    *    The data in scope, innermost first.
+    * @param key
+    *    The name of the value.
+    * @return
+    *    The value, or null if it is not found.
+    */
+   static Object lookup(Deque<Object> scopes, String key)
+   {
+      if (".".equals(key))
+      {
+         Object item = scopes.peek();
+         return item == NO_VALUE ? null : item;
+      }
+      for (Object scope : scopes)
+      {
+         if (scope instanceof Map && ((Map<?, ?>)scope).containsKey(key))
+         {
+            return ((Map<?, ?>)scope).get(key);
+         }
+      }
+      return null;
+   }
+   
+   /**
+    * Checks if a value is set, meaning it is not null, false, or an
+    * empty list or array.
+    *
+    * @param value
+    *    The value to check.
+    * @return
+    *    True if the value is set.
+    */
+   private static boolean isSet(Object value)
+   {
+      if (value == null || Boolean.FALSE.equals(value))
+      {
+         return false;
+      }
+      if (value instanceof Iterable)
+      {
+         return ((Iterable<?>)value).iterator().hasNext();
+      }
+      return !value.getClass().isArray() || Array.getLength(value) > 0;
+   }
+}
@@ -0,0 +1,27 @@
+package bjad.common.string;
+
+import java.io.IOException;
+
+/**
+ * Where the TemplateTextUtil writes the text it fills in, which is
+ * either a StringBuilder or a Writer.
+ *
+ * @author
+ *   Ben Dougall
+ */
+interface TemplateSink
+{
+   /**
+    * Writes part of the text passed.
+    *
+    * @param text
+    *    The text to write part of.
+    * @param start
+    *    The start of the part to write, inclusive.
+    * @param end
+    *    The end of the part to write, exclusive.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text.
+    */
+   void write(CharSequence text, int start, int end) throws IOException;
+}
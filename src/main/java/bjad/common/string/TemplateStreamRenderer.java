@@ -0,0 +1,198 @@
+package bjad.common.string;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+/**
+ * Renders a lazily loaded template as its text is streamed from a
+ * reader, holding only a window of the text in memory. The templates
+ * are found and replaced the same way as a loaded TemplateTextUtil.
+ * A prefix without a suffix is only held onto while the text after
+ * it could still hold a key being replaced, so a stray prefix does
+ * not keep the rest of the text in the window.
+ *
+ * @author
+ *   Ben Dougall
+ */
+final class TemplateStreamRenderer
+{
+   private static final int BUFFER_SIZE = 8192;
+   
+   private final Reader reader;
+   private final String prefix;
+   private final String suffix;
+   private final Map<String, String> values;
+   private final int[] keyLengths;
+   private final TemplateSink sink;
+   private final char[] buffer = new char[BUFFER_SIZE];
+   private final StringBuilder window = new StringBuilder();
+   private int scanFrom = 0;
+   private boolean open = false;
+   
+   /**
+    * Constructor, setting up the rendering.
+    *
+    * @param reader
+    *    The reader streaming the template text.
+    * @param prefix
+    *    The prefix of the templates, which must not be empty.
+    * @param suffix
+    *    The suffix of the templates.
+    * @param values
+    *    The mapping of template text and the values to replace
+    *    the template text with.
+    * @param keyLengths
+    *    The distinct lengths of the keys within the mapping,
+    *    longest first.
+    * @param sink
+    *    Where to write the text.
+    */
+   TemplateStreamRenderer(Reader reader, String prefix, String suffix, Map<String, String> values,
+         int[] keyLengths, TemplateSink sink)
+   {
+      this.reader = reader;
+      this.prefix = prefix;
+      this.suffix = suffix;
+      this.values = values;
+      this.keyLengths = keyLengths;
+      this.sink = sink;
+   }
+   
+   /**
+    * Streams the template text, writing it to the sink with the
+    * templates replaced.
+    *
+    * @throws IOException
+    *    Any IO Exception encountered reading or writing the text.
+    */
+   void render() throws IOException
+   {
+      int read;
+      while ((read = reader.read(buffer)) >= 0)
+      {
+         window.append(buffer, 0, read);
+         process(false);
+      }
+      process(true);
+   }
+   
+   /**
+    * Writes out as much of the window as can be, replacing the
+    * templates within it, and keeps any text that may be part of
+    * a template continuing into the text not read yet.
+    *
+    * @param atEnd
+    *    True once all the text has been read.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text.
+    */
+   private void process(boolean atEnd) throws IOException
+   {
+      int length = window.length();
+      int position = 0;
+      while (position < length)
+      {
+         int start;
+         int keyStart;
+         if (open)
+         {
+            // The prefix of the template has already been written, as the
+            // key after it grew too long to be any of the keys replaced.
+            start = -1;
+            keyStart = position;
+         }
+         else
+         {
+            start = window.indexOf(prefix, position);
+            if (start < 0)
+            {
+               int safe = atEnd ? length : Math.max(position, length - prefix.length() + 1);
+               sink.write(window, position, safe);
+               position = safe;
+               break;
+            }
+            keyStart = start + prefix.length();
+         }
+         
+         if (suffix.isEmpty())
+         {
+            if (!atEnd && keyLengths.length > 0 && length - keyStart < keyLengths[0])
+            {
+               sink.write(window, position, start);
+               position = start;
+               break;
+            }
+            String value = null;
+            int keyEnd = keyStart;
+            for (int keyLength : keyLengths)
+            {
+               if (keyStart + keyLength <= length)
+               {
+                  value = values.get(window.substring(keyStart, keyStart + keyLength));
+                  if (value != null)
+                  {
+                     keyEnd = keyStart + keyLength;
+                     break;
+                  }
+               }
+            }
+            if (value == null)
+            {
+               sink.write(window, position, start + 1);
+               position = start + 1;
+            }
+            else
+            {
+               sink.write(window, position, start);
+               sink.write(value, 0, value.length());
+               position = keyEnd;
+            }
+            continue;
+         }
+         
+         int end = window.indexOf(suffix, Math.max(keyStart, scanFrom));
+         if (end < 0)
+         {
+            if (atEnd)
+            {
+               sink.write(window, position, length);
+               position = length;
+               break;
+            }
+            
+            // Any suffix found later is at least this far along, and only 
+            // a prefix within the longest key of it can start a template 
+            // that is replaced, so the text before that is written out.
+            int scanned = Math.max(keyStart, length - suffix.length() + 1);
+            int longestKey = keyLengths.length == 0 ? 0 : keyLengths[0];
+            int safe = Math.max(position, Math.max(start, scanned - prefix.length() - longestKey));
+            sink.write(window, position, safe);
+            open = open || safe > start;
+            position = safe;
+            scanFrom = scanned - position;
+            break;
+         }
+         int inner = window.indexOf(prefix, open ? position : start + 1);
+         while (inner >= 0 && inner + prefix.length() <= end)
+         {
+            start = inner;
+            inner = window.indexOf(prefix, start + 1);
+         }
+         open = false;
+         scanFrom = 0;
+         String value = start < 0 ? null : values.get(window.substring(start + prefix.length(), end));
+         if (value == null)
+         {
+            sink.write(window, position, end + suffix.length());
+         }
+         else
+         {
+            sink.write(window, position, start);
+            sink.write(value, 0, value.length());
+         }
+         position = end + suffix.length();
+      }
+      window.delete(0, position);
+   }
+}
@@ -0,0 +1,217 @@
+package bjad.common.string;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import bjad.common.URLStreamFactory;
+
+/**
+ * Process wide cache of compiled templates, keyed by the url the
+ * text was loaded from along with the prefix and suffix of the 
+ * templates, so a template used again is neither read nor compiled
+ * again. The cache is bounded, dropping the least recently used 
+ * template once full, and can optionally check the modified time 
+ * of templates loaded from files, loading the text again when the 
+ * file has changed.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public final class TemplateTextCache
+{
+   /**
+    * The default number of templates held by the cache.
+    */
+   public static final int DEFAULT_MAXIMUM_SIZE = 64;
+   
+   private static final Map<List<String>, CachedTemplate> CACHE = 
+         new LinkedHashMap<List<String>, CachedTemplate>(16, 0.75f, true)
+   {
+      private static final long serialVersionUID = 5038726541985503194L;
+      
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<List<String>, CachedTemplate> eldest)
+      {
+         return size() > maximumSize;
+      }
+   };
+   
+   private static int maximumSize = DEFAULT_MAXIMUM_SIZE;
+   private static volatile boolean checkModified = false;
+   
+   /**
+    * Protected constructor to avoid the creation of the 
+    * object outside the class.
+    */
+   protected TemplateTextCache() {}
+   
+   /**
+    * Provides the template for the url passed, using the default
+    * prefix and suffix for the templates of {{ and }}, loading it
+    * the first time it is requested.
+    *
+    * @param streamURL
+    *    Where to download the base text from.
+    * @return
+    *    The cached template.
+    * @throws IOException
+    *    Any IO Exception encoutered during the loading of the 
+    *    base text will be thrown.
+    */
+   public static TemplateTextUtil getTemplate(String streamURL) throws IOException
+   {
+      return getTemplate(streamURL, "{{", "}}");
+   }
+   
+   /**
+    * Provides the template for the url, prefix and suffix passed, 
+    * loading it the first time it is requested, or when checking
+    * modified times, when the file it was loaded from has changed.
+    *
+    * @param streamURL
+    *    Where to download the base text from.
+    * @param prefix
+    *    The prefix to find in the template text.
+    * @param suffix
+    *    The suffix to find in the template text.
+    * @return
+    *    The cached template.
+    * @throws IOException
+    *    Any IO Exception encoutered during the loading of the 
+    *    base text will be thrown.
+    */
+   public static TemplateTextUtil getTemplate(String streamURL, String prefix, String suffix) throws IOException
+   {
+      List<String> key = Arrays.asList(streamURL, prefix, suffix);
+      CachedTemplate cached;
+      synchronized (CACHE)
+      {
+         cached = CACHE.get(key);
+      }
+      if (cached != null && (!checkModified || cached.lastModified == URLStreamFactory.getLastModified(streamURL)))
+      {
+         return cached.template;
+      }
+      
+      long lastModified = URLStreamFactory.getLastModified(streamURL);
+      TemplateTextUtil template = new TemplateTextUtil(streamURL, prefix, suffix);
+      synchronized (CACHE)
+      {
+         CACHE.put(key, new CachedTemplate(template, lastModified));
+      }
+      return template;
+   }
+   
+   /**
+    * Removes all the templates from the cache.
+    */
+   public static void clear()
+   {
+      synchronized (CACHE)
+      {
+         CACHE.clear();
+      }
+   }
+   
+   /**
+    * Provides the number of templates in the cache.
+    *
+    * @return
+    *    The number of cached templates.
+    */
+   public static int size()
+   {
+      synchronized (CACHE)
+      {
+         return CACHE.size();
+      }
+   }
+   
+   /**
+    * Provides the number of templates the cache will hold before 
+    * dropping the least recently used template.
+    *
+    * @return
+    *    The maximum size of the cache.
+    */
+   public static int getMaximumSize()
+   {
+      synchronized (CACHE)
+      {
+         return maximumSize;
+      }
+   }
+   
+   /**
+    * Sets the number of templates the cache will hold before 
+    * dropping the least recently used template, dropping templates
+    * now if the cache holds more than the new size.
+    *
+    * @param maximumSize
+    *    The maximum size of the cache, which must be at least 1.
+    */
+   public static void setMaximumSize(int maximumSize)
+   {
+      if (maximumSize < 1)
+      {
+         throw new IllegalArgumentException("The maximum size must be at least 1");
+      }
+      synchronized (CACHE)
+      {
+         TemplateTextCache.maximumSize = maximumSize;
+         Iterator<List<String>> keys = CACHE.keySet().iterator();
+         while (CACHE.size() > maximumSize)
+         {
+            keys.next();
+            keys.remove();
+         }
+      }
+   }
+   
+   /**
+    * Checks if the modified time of templates loaded from files
+    * is checked each time the template is requested.
+    *
+    * @return
+    *    True if the modified times are checked.
+    */
+   public static boolean isCheckModified()
+   {
+      return checkModified;
+   }
+   
+   /**
+    * Sets if the modified time of templates loaded from files
+    * is checked each time the template is requested, loading the
+    * text again when the file has changed. Templates loaded from 
+    * the classpath or over http are never checked.
+    *
+    * @param checkModified
+    *    True to check the modified times, false (the default) to 
+    *    keep using the cached templates.
+    */
+   public static void setCheckModified(boolean checkModified)
+   {
+      TemplateTextCache.checkModified = checkModified;
+   }
+   
+   /**
+    * A template held by the cache, along with the modified time
+    * of the file it was loaded from.
+    */
+   private static final class CachedTemplate
+   {
+      private final TemplateTextUtil template;
+      private final long lastModified;
+      
+      private CachedTemplate(TemplateTextUtil template, long lastModified)
+      {
+         this.template = template;
+         this.lastModified = lastModified;
+      }
+   }
+}
@@ -1,27 +1,69 @@
 package bjad.common.string;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeSet;
 
 import bjad.common.URLStreamFactory;
 
-import java.util.Scanner;
-
 /**
  * Utility which will read in text from a stream
  * and then replace "templates" within the text 
  * from the stream with values passed to the
  * utility.
+ * <p>
+ * The text is compiled once when it is loaded into the literal
+ * text between the templates and the position of each template,
+ * so filling in the text is a single pass with a map lookup for
+ * each template. The text can be rendered straight to a Writer or
+ * OutputStream without building the whole result as a String, and
+ * huge templates can be loaded lazily, streaming the text from the
+ * url each time it is rendered instead of holding it in memory.
+ * The text is read in bulk and decoded with the character set given,
+ * keeping its line breaks as they are in the source.
+ * <p>
+ * The text can also be rendered with sections, using nested data
+ * rather than a flat mapping. With the default prefix and suffix,
+ * {{#name}}...{{/name}} renders the text between the tags once for
+ * each item when the value is a list or array, or once when the value
+ * is set, and {{^name}}...{{/name}} renders the text only when the 
+ * value is not set. Within a section, names are looked up in the 
+ * current item when it is a map, then in the enclosing data, with 
+ * {{.}} being the item itself. The sections are compiled once into a 
+ * tree and rendered in a single pass over the data.
  *
  * @author 
  *  Ben Dougall
  */
 public class TemplateTextUtil
 {
+   private static final int LOAD_BUFFER_SIZE = 8192;
+   
    private String templatePrefix;
    private String templateSuffix;
    private String templateText; 
+   private String streamURL = null;
+   private Charset charset;
+   private int slotCount = 0;
+   private int[] slotStarts = new int[16];
+   private int[] slotEnds = new int[16];
+   private String[] slotKeys = new String[16];
+   private volatile TemplateSection sections = null;
    
    /**
     * Creates the object, reading the data from the url provided, and 
@@ -55,25 +97,93 @@ public class TemplateTextUtil
     *    base text will be thrown.
     */
    public TemplateTextUtil(String streamURL, String prefix, String suffix) throws IOException
+   {
+      this(streamURL, prefix, suffix, false);
+   }
+   
+   /**
+    * Creates the object, applying a custom prefix and suffix to look 
+    * for when replace data in the template text from the url, and 
+    * optionally loading the text lazily. A lazily loaded template
+    * only checks the url can be opened when created, and streams the
+    * text from the url each time it is rendered, so only a small part
+    * of the text is held in memory at a time.
+    *
+    * @param streamURL
+    *    Where to download the base text from.
+    * @param prefix
+    *    The prefix to find in the template text.
+    * @param suffix
+    *    The suffix to find in the template text.
+    * @param lazy
+    *    True to stream the text from the url each time it is rendered,
+    *    false to load it now.
+    * @throws IOException
+    *    Any IO Exception encoutered during the loading of the 
+    *    base text will be thrown.
+    */
+   public TemplateTextUtil(String streamURL, String prefix, String suffix, boolean lazy) throws IOException
+   {
+      this(streamURL, prefix, suffix, lazy, Charset.defaultCharset());
+   }
+   
+   /**
+    * Creates the object, applying a custom prefix and suffix to look 
+    * for when replace data in the template text from the url, 
+    * optionally loading the text lazily, and decoding the text with
+    * the character set passed.
+    *
+    * @param streamURL
+    *    Where to download the base text from.
+    * @param prefix
+    *    The prefix to find in the template text.
+    * @param suffix
+    *    The suffix to find in the template text.
+    * @param lazy
+    *    True to stream the text from the url each time it is rendered,
+    *    false to load it now.
+    * @param charset
+    *    The character set the text is encoded with.
+    * @throws IOException
+    *    Any IO Exception encoutered during the loading of the 
+    *    base text will be thrown.
+    */
+   public TemplateTextUtil(String streamURL, String prefix, String suffix, boolean lazy, Charset charset) 
+         throws IOException
    {
       this.templatePrefix = prefix;
       this.templateSuffix = suffix;
+      this.charset = charset;
       
-      StringBuilder sb = new StringBuilder();
-      try (Scanner s = new Scanner(URLStreamFactory.getStream(streamURL)))
-      {        
-         while (s.hasNextLine())
-         {
-            sb.append(s.nextLine()).append(System.lineSeparator());
-         }
+      if (lazy)
+      {
+         URLStreamFactory.getStream(streamURL).close();
+         this.streamURL = streamURL;
+         return;
       }
       
-      templateText = sb.toString().substring(0, sb.toString().lastIndexOf(System.lineSeparator()));
+      templateText = load(streamURL, charset);
+      compile();
+   }
+   
+   /**
+    * Checks if the template text is streamed from the url each
+    * time it is rendered.
+    * 
+    * @return
+    *    True if the template was loaded lazily.
+    */
+   public boolean isLazy()
+   {
+      return streamURL != null;
    }
    
    /**
     * Returns the template text, with the "templates" replaced
-    * with the values contained in the mapping passed.
+    * with the values contained in the mapping passed. Templates
+    * whose keys are not within the mapping are left as they are.
+    * When the suffix is empty, the longest key matching the text
+    * after the prefix is used.
     * 
     * @param replacementMap
     *    The mapping of template text and the values to replace
@@ -86,19 +196,478 @@ public class TemplateTextUtil
     */
    public String getTemplateText(Map<String, String> replacementMap)
    {
-      if (replacementMap == null)
+      if (streamURL == null && (replacementMap == null || replacementMap.isEmpty()))
       {
          return templateText;
       }
       
-      String retValue = templateText;
-      for (Entry<String, String> entry : replacementMap.entrySet())
+      StringBuilder sb = new StringBuilder(streamURL == null ? templateText.length() + slotCount * 16 : 16);
+      try
+      {
+         render(replacementMap, (text, start, end) -> sb.append(text, start, end));
+      }
+      catch (IOException ex)
+      {
+         throw new UncheckedIOException(ex);
+      }
+      return sb.toString();
+   }
+   
+   /**
+    * Writes the template text to the writer passed, with the 
+    * "templates" replaced the same way as 
+    * {@link #getTemplateText(Map)}, writing the text between the 
+    * templates and the values straight to the writer. The writer
+    * is not flushed or closed.
+    * 
+    * @param replacementMap
+    *    The mapping of template text and the values to replace
+    *    the template text with, or null to write the original text. 
+    * @param writer
+    *    The writer to write the text to.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text, or streaming 
+    *    the text of a lazily loaded template.
+    */
+   public void render(Map<String, String> replacementMap, Writer writer) throws IOException
+   {
+      render(replacementMap, writerSink(writer));
+   }
+   
+   /**
+    * Writes the template text to the stream passed, encoded with the
+    * character set passed, with the "templates" replaced the same way 
+    * as {@link #getTemplateText(Map)}. The stream is flushed but not
+    * closed.
+    * 
+    * @param replacementMap
+    *    The mapping of template text and the values to replace
+    *    the template text with, or null to write the original text. 
+    * @param stream
+    *    The stream to write the text to.
+    * @param charset
+    *    The character set to encode the text with.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text, or streaming 
+    *    the text of a lazily loaded template.
+    */
+   public void render(Map<String, String> replacementMap, OutputStream stream, Charset charset) throws IOException
+   {
+      Writer writer = new OutputStreamWriter(stream, charset);
+      render(replacementMap, writer);
+      writer.flush();
+   }
+   
+   /**
+    * Writes the template text to the sink passed, with the "templates"
+    * replaced.
+    * 
+    * @param replacementMap
+    *    The mapping of template text and the values to replace
+    *    the template text with, or null to write the original text. 
+    * @param sink
+    *    Where to write the text.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text, or streaming 
+    *    the text of a lazily loaded template.
+    */
+   private void render(Map<String, String> replacementMap, TemplateSink sink) throws IOException
+   {
+      Map<String, String> values = replacementMap == null 
+            ? Collections.<String, String>emptyMap() : replacementMap;
+      if (streamURL != null && !templatePrefix.isEmpty())
+      {
+         try (Reader reader = new InputStreamReader(URLStreamFactory.getStream(streamURL), charset))
+         {
+            new TemplateStreamRenderer(reader, templatePrefix, templateSuffix, 
+                  values, keyLengths(values), sink).render();
+         }
+         return;
+      }
+      
+      String text = streamURL == null ? templateText : load(streamURL, charset);
+      if (templatePrefix.isEmpty())
+      {
+         for (Entry<String, String> entry : values.entrySet())
+         {
+            text = text.replace(
+                  this.templatePrefix + entry.getKey() + this.templateSuffix, 
+                  entry.getValue());
+         }
+         sink.write(text, 0, text.length());
+         return;
+      }
+      
+      int copied = 0;
+      if (templateSuffix.isEmpty())
+      {
+         int[] keyLengths = keyLengths(values);
+         for (int i = 0; i < slotCount; i++)
+         {
+            int keyStart = slotEnds[i];
+            if (slotStarts[i] < copied)
+            {
+               continue;
+            }
+            for (int length : keyLengths)
+            {
+               String value = keyStart + length <= text.length() 
+                     ? values.get(text.substring(keyStart, keyStart + length)) : null;
+               if (value != null)
+               {
+                  sink.write(text, copied, slotStarts[i]);
+                  sink.write(value, 0, value.length());
+                  copied = keyStart + length;
+                  break;
+               }
+            }
+         }
+      }
+      else
+      {
+         for (int i = 0; i < slotCount; i++)
+         {
+            String value = values.get(slotKeys[i]);
+            if (value != null)
+            {
+               sink.write(text, copied, slotStarts[i]);
+               sink.write(value, 0, value.length());
+               copied = slotEnds[i];
+            }
+         }
+      }
+      sink.write(text, copied, text.length());
+   }
+   
+   /**
+    * Returns the template text rendered with sections, using the data
+    * passed. Templates whose values are not found or are null are 
+    * left as they are.
+    * 
+    * @param data
+    *    The values to render the template with, which may be nested
+    *    maps, lists and arrays for sections.
+    * @return
+    *    The rendered text.
+    * @throws IllegalStateException
+    *    If the template has no prefix or suffix, or its sections are
+    *    not opened and closed in order.
+    */
+   public String getSectionText(Map<String, ?> data)
+   {
+      StringBuilder sb = new StringBuilder(streamURL == null ? templateText.length() + slotCount * 16 : 16);
+      try
+      {
+         renderSections(data, (text, start, end) -> sb.append(text, start, end));
+      }
+      catch (IOException ex)
+      {
+         throw new UncheckedIOException(ex);
+      }
+      return sb.toString();
+   }
+   
+   /**
+    * Writes the template text rendered with sections to the writer 
+    * passed, the same way as {@link #getSectionText(Map)}. The writer
+    * is not flushed or closed.
+    * 
+    * @param data
+    *    The values to render the template with, which may be nested
+    *    maps, lists and arrays for sections.
+    * @param writer
+    *    The writer to write the text to.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text, or loading 
+    *    the text of a lazily loaded template.
+    * @throws IllegalStateException
+    *    If the template has no prefix or suffix, or its sections are
+    *    not opened and closed in order.
+    */
+   public void renderSections(Map<String, ?> data, Writer writer) throws IOException
+   {
+      renderSections(data, writerSink(writer));
+   }
+   
+   /**
+    * Writes the template text rendered with sections to the sink 
+    * passed. Lazily loaded templates are loaded and compiled each 
+    * time they are rendered.
+    * 
+    * @param data
+    *    The values to render the template with.
+    * @param sink
+    *    Where to write the text.
+    * @throws IOException
+    *    Any IO Exception encountered writing the text, or loading 
+    *    the text of a lazily loaded template.
+    */
+   private void renderSections(Map<String, ?> data, TemplateSink sink) throws IOException
+   {
+      if (streamURL != null)
+      {
+         new TemplateTextUtil(streamURL, templatePrefix, templateSuffix, false, charset).renderSections(data, sink);
+         return;
+      }
+      
+      TemplateSection root = sections;
+      if (root == null)
+      {
+         root = compileSections();
+         sections = root;
+      }
+      Deque<Object> scopes = new ArrayDeque<>();
+      scopes.push(data == null ? Collections.emptyMap() : data);
+      root.render(templateText, scopes, sink);
+   }
+   
+   /**
+    * Provides a sink writing to the writer passed, writing strings
+    * straight from their characters rather than through a copy of
+    * each range.
+    * 
+    * @param writer
+    *    The writer to write the text to.
+    * @return
+    *    The sink.
+    */
+   private static TemplateSink writerSink(Writer writer)
+   {
+      return (text, start, end) -> 
+      {
+         if (text instanceof String)
+         {
+            writer.write((String)text, start, end - start);
+         }
+         else
+         {
+            writer.append(text, start, end);
+         }
+      };
+   }
+   
+   /**
+    * Reads the text from the url, reading files directly and other
+    * streams in bulk, and decoding the bytes into the text in one go.
+    * 
+    * @param streamURL
+    *    Where to download the text from.
+    * @param charset
+    *    The character set the text is encoded with.
+    * @return
+    *    The text.
+    * @throws IOException
+    *    Any IO Exception encountered reading the text.
+    */
+   private static String load(String streamURL, Charset charset) throws IOException
+   {
+      File file = URLStreamFactory.getFile(streamURL);
+      if (file != null && file.isFile())
+      {
+         return new String(Files.readAllBytes(file.toPath()), charset);
+      }
+      
+      try (InputStream is = URLStreamFactory.getStream(streamURL))
       {
-         retValue = retValue.replace(
-               this.templatePrefix + entry.getKey() + this.templateSuffix, 
-               entry.getValue());
+         byte[] bytes = new byte[LOAD_BUFFER_SIZE];
+         int length = 0;
+         int read;
+         while ((read = is.read(bytes, length, bytes.length - length)) >= 0)
+         {
+            length += read;
+            if (length == bytes.length)
+            {
+               bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+         }
+         return new String(bytes, 0, length, charset);
+      }
+   }
+   
+   /**
+    * Compiles the template text, finding the start and end of each
+    * template and its key. When the suffix is empty the end of a 
+    * template depends on the keys being replaced, so only the start
+    * of each template is found, with the end being the end of the 
+    * prefix. The text is not compiled when the prefix is empty.
+    */
+   private void compile()
+   {
+      if (templatePrefix.isEmpty())
+      {
+         return;
       }
       
-      return retValue;
+      int prefixLength = templatePrefix.length();
+      int from = 0;
+      int start;
+      while ((start = templateText.indexOf(templatePrefix, from)) >= 0)
+      {
+         int keyStart = start + prefixLength;
+         if (templateSuffix.isEmpty())
+         {
+            addSlot(start, keyStart, null);
+            from = start + 1;
+            continue;
+         }
+         
+         int end = templateText.indexOf(templateSuffix, keyStart);
+         if (end < 0)
+         {
+            break;
+         }
+         int inner = templateText.indexOf(templatePrefix, start + 1);
+         while (inner >= 0 && inner + prefixLength <= end)
+         {
+            start = inner;
+            inner = templateText.indexOf(templatePrefix, start + 1);
+         }
+         addSlot(start, end + templateSuffix.length(), 
+               templateText.substring(start + prefixLength, end));
+         from = end + templateSuffix.length();
+      }
+   }
+   
+   /**
+    * Compiles the templates found within the text into a tree of 
+    * sections, with the templates whose keys start with # or ^ 
+    * opening a section or inverted section, and those starting with
+    * / closing it.
+    * 
+    * @return
+    *    The section for the whole template.
+    * @throws IllegalStateException
+    *    If the template has no prefix or suffix, or its sections are
+    *    not opened and closed in order.
+    */
+   private TemplateSection compileSections()
+   {
+      if (templatePrefix.isEmpty() || templateSuffix.isEmpty())
+      {
+         throw new IllegalStateException("Sections need both a template prefix and suffix");
+      }
+      
+      Deque<TemplateSection> open = new ArrayDeque<>();
+      open.push(new TemplateSection(null, false));
+      int copied = 0;
+      for (int i = 0; i < slotCount; i++)
+      {
+         addText(open.peek(), copied, slotStarts[i]);
+         String key = slotKeys[i];
+         char type = key.isEmpty() ? ' ' : key.charAt(0);
+         if (type == '#' || type == '^')
+         {
+            TemplateSection section = new TemplateSection(key.substring(1), type == '^');
+            open.peek().add(section);
+            open.push(section);
+         }
+         else if (type == '/')
+         {
+            if (open.size() == 1 || !open.peek().getName().equals(key.substring(1)))
+            {
+               throw new IllegalStateException("Unexpected end of section " + key.substring(1));
+            }
+            open.pop();
+         }
+         else
+         {
+            int start = slotStarts[i];
+            int end = slotEnds[i];
+            open.peek().add((text, scopes, sink) -> 
+            {
+               Object value = TemplateSection.lookup(scopes, key);
+               if (value == null)
+               {
+                  sink.write(text, start, end);
+               }
+               else
+               {
+                  String string = value.toString();
+                  sink.write(string, 0, string.length());
+               }
+            });
+         }
+         copied = slotEnds[i];
+      }
+      if (open.size() > 1)
+      {
+         throw new IllegalStateException("Section " + open.peek().getName() + " is not closed");
+      }
+      addText(open.peek(), copied, templateText.length());
+      return open.peek();
+   }
+   
+   /**
+    * Adds the literal text between two positions to a section, 
+    * unless it is empty.
+    * 
+    * @param section
+    *    The section to add the text to.
+    * @param start
+    *    The start of the text.
+    * @param end
+    *    The end of the text.
+    */
+   private static void addText(TemplateSection section, int start, int end)
+   {
+      if (start < end)
+      {
+         section.add((text, scopes, sink) -> sink.write(text, start, end));
+      }
+   }
+   
+   /**
+    * Adds a template found within the text.
+    * 
+    * @param start
+    *    The start of the template's prefix.
+    * @param end
+    *    The end of the template's suffix. 
+    * @param key
+    *    The key between the prefix and suffix, or null when the 
+    *    suffix is empty.
+    */
+   private void addSlot(int start, int end, String key)
+   {
+      if (slotCount == slotStarts.length)
+      {
+         slotStarts = Arrays.copyOf(slotStarts, slotCount * 2);
+         slotEnds = Arrays.copyOf(slotEnds, slotCount * 2);
+         slotKeys = Arrays.copyOf(slotKeys, slotCount * 2);
+      }
+      slotStarts[slotCount] = start;
+      slotEnds[slotCount] = end;
+      slotKeys[slotCount] = key;
+      slotCount++;
+   }
+   
+   /**
+    * Provides the distinct lengths of the keys being replaced, 
+    * longest first, so templates without a suffix are replaced
+    * using the longest key that matches.
+    * 
+    * @param replacementMap
+    *    The mapping of template text and the values to replace
+    *    the template text with. 
+    * @return
+    *    The key lengths, longest first.
+    */
+   static int[] keyLengths(Map<String, String> replacementMap)
+   {
+      TreeSet<Integer> lengths = new TreeSet<>();
+      for (String key : replacementMap.keySet())
+      {
+         if (key != null)
+         {
+            lengths.add(key.length());
+         }
+      }
+      int[] result = new int[lengths.size()];
+      int i = 0;
+      for (Integer length : lengths.descendingSet())
+      {
+         result[i++] = length;
+      }
+      return result;
    }
 }
@@ -0,0 +1,192 @@
+package bjad.processor.cboamount;
+
+/**
+ * Depth first search through the elements, deciding at each 
+ * depth whether the element at that index is excluded or included
+ * in the combination. Excluding is tried first, so combinations are
+ * found in the same order the elements would have been counted 
+ * through in binary, with the first element being the highest bit.
+ * The search runs on the scaled long amounts, with 
+ * {@link DecimalBacktrackingSearch} used when the amounts do not 
+ * fit in a long.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+class BacktrackingSearch
+{
+   /** The scaled amounts of the elements, sorted largest absolute amount first. */
+   protected final long[] amounts;
+   private final ScaledAmounts scaledAmounts;
+   private final long maximum;
+   private final ComboMatchCollector collector;
+   private final long[] remainingPositiveAmounts;
+   private final long[] remainingNegativeAmounts;
+   
+   /**
+    * Constructor, setting up the search. 
+    * 
+    * @param scaledAmounts
+    *    The amounts of the elements, sorted largest absolute amount first,
+    *    and the windows of totals to find, as scaled long values.
+    * @param collector
+    *    The collector to pass the matches to.
+    */
+   BacktrackingSearch(ScaledAmounts scaledAmounts, ComboMatchCollector collector)
+   {
+      this.amounts = scaledAmounts.amounts;
+      this.scaledAmounts = scaledAmounts;
+      this.maximum = scaledAmounts.getMaximum();
+      this.collector = collector;
+      
+      // Determine the sum of the positive and the negative amounts from each 
+      // index to the end of the list, which bound the totals that can still 
+      // be made, so the search can stop going down a path that can no longer
+      // reach any amount we are looking for.
+      remainingPositiveAmounts = new long[amounts.length + 1];
+      remainingNegativeAmounts = new long[amounts.length + 1];
+      for (int i = amounts.length - 1; i >= 0; i--)
+      {
+         remainingPositiveAmounts[i] = remainingPositiveAmounts[i + 1] + Math.max(amounts[i], 0);
+         remainingNegativeAmounts[i] = remainingNegativeAmounts[i + 1] + Math.min(amounts[i], 0);
+      }
+   }
+   
+   /**
+    * Runs the search, passing every match found to the collector.
+    */
+   void search()
+   {
+      search(0, 0, new long[(amounts.length + 63) >>> 6], 0);
+   }
+   
+   /**
+    * Decides on the element at the index passed, and then 
+    * moves onto the next element. 
+    * 
+    * @param index
+    *    The index of the element being decided on. 
+    * @param total
+    *    The total of the elements included so far.
+    * @param chosen
+    *    The bit mask of the indexes of the elements included so far.
+    * @param chosenCount
+    *    The number of elements included so far.
+    */
+   protected final void search(int index, long total, long[] chosen, int chosenCount)
+   {
+      if (collector.isStopped())
+      {
+         return;
+      }
+      
+      // All elements decided on, record the combination if it is a match.
+      if (index == amounts.length)
+      {
+         if (chosenCount > 0 && scaledAmounts.contains(total))
+         {
+            collector.addMatch(chosen);
+         }
+         collector.addExploredAtDepth(index);
+         return;
+      }
+      
+      // No total between adding every remaining negative amount and adding 
+      // every remaining positive amount is within a window, so nothing below
+      // this point can match.
+      if (!scaledAmounts.intersects(
+            total + remainingNegativeAmounts[index], 
+            total + remainingPositiveAmounts[index]))
+      {
+         collector.addExploredAtDepth(index);
+         return;
+      }
+      
+      // Once the total is greater than the highest amount to find, even after
+      // adding every remaining negative amount, there is no need to keep 
+      // adding to it. 
+      long newTotal = total + amounts[index];
+      boolean include = newTotal + remainingNegativeAmounts[index + 1] <= maximum;
+      long bit = 1L << index;
+      if (include)
+      {
+         chosen[index >>> 6] |= bit;
+         include = !splitInclude(index + 1, newTotal, chosen, chosenCount + 1);
+         chosen[index >>> 6] &= ~bit;
+      }
+      else
+      {
+         collector.addExploredAtDepth(index + 1);
+      }
+      
+      search(index + 1, total, chosen, chosenCount);
+      
+      if (include)
+      {
+         chosen[index >>> 6] |= bit;
+         search(index + 1, newTotal, chosen, chosenCount + 1);
+         chosen[index >>> 6] &= ~bit;
+      }
+   }
+   
+   /**
+    * Gives the search a chance to hand the branch including the current
+    * element off to be searched separately, before the branch excluding 
+    * it is searched. 
+    * 
+    * @param index
+    *    The index of the next element to decide on within the branch.
+    * @param total
+    *    The total of the elements included within the branch.
+    * @param chosen
+    *    The bit mask of the indexes of the elements included within the 
+    *    branch. The array is reused once this function returns.
+    * @param chosenCount
+    *    The number of elements included within the branch.
+    * @return
+    *    True if the branch was handed off and should not be searched
+    *    by the caller, false otherwise. The sequential search always
+    *    returns false.
+    */
+   protected boolean splitInclude(int index, long total, long[] chosen, int chosenCount)
+   {
+      return false;
+   }
+   
+   /**
+    * Solver running the backtracking search, estimated to look at every
+    * subset of the elements, although the pruning usually does far 
+    * better than that. The BigDecimal search is run when the amounts 
+    * cannot be scaled to long values.
+    *
+    * @author 
+    *   Ben Dougall
+    */
+   static final class Solver implements ComboSolver
+   {
+      @Override
+      public boolean supports(ComboSearchContext context)
+      {
+         return true;
+      }
+      
+      @Override
+      public double estimateCost(ComboSearchContext context)
+      {
+         return Math.pow(2, context.getElementCount());
+      }
+      
+      @Override
+      public void solve(ComboSearchContext context)
+      {
+         if (context.getScaledAmounts() == null)
+         {
+            new DecimalBacktrackingSearch(context.getAmounts(), context.getWindows(), context.getCollector()).search();
+         }
+         else
+         {
+            new BacktrackingSearch(context.getScaledAmounts(), context.getCollector()).search();
+         }
+      }
+   }
+}
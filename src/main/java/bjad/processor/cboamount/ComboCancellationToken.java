@@ -0,0 +1,35 @@
+package bjad.processor.cboamount;
+
+/**
+ * Token used to cancel a ComboFinder search from another thread. The
+ * search checks the token as it goes and stops shortly after it is 
+ * cancelled, returning the combinations found so far. A token stays 
+ * cancelled once cancelled, so a new token is needed for each search 
+ * that may be cancelled.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+public final class ComboCancellationToken
+{
+   private volatile boolean cancelled = false;
+   
+   /**
+    * Cancels any search using the token.
+    */
+   public void cancel()
+   {
+      cancelled = true;
+   }
+   
+   /**
+    * Checks if the token has been cancelled.
+    * 
+    * @return
+    *    True if the token has been cancelled.
+    */
+   public boolean isCancelled()
+   {
+      return cancelled;
+   }
+}
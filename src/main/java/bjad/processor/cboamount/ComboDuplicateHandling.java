@@ -0,0 +1,31 @@
+package bjad.processor.cboamount;
+
+/**
+ * How the ComboFinder treats elements that have the same amount.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public enum ComboDuplicateHandling
+{
+   /**
+    * Every element is searched separately using the search strategy
+    * set, which is the default.
+    */
+   SEPARATE,
+   /**
+    * Elements with the same amount are grouped together and the search
+    * decides how many of each amount to include rather than which
+    * elements, so equivalent subsets are only searched once. Each
+    * match is then expanded to every combination of the elements with
+    * those amounts, returning the same combinations as SEPARATE in a
+    * different order. Counting the combinations does not expand them.
+    */
+   EXPANDED,
+   /**
+    * Elements with the same amount are grouped together as with EXPANDED,
+    * but each distinct set of amounts is only returned once, using the
+    * first elements found with each amount.
+    */
+   DISTINCT_AMOUNTS
+}
@@ -1,12 +1,14 @@
 package bjad.processor.cboamount;
 
 import java.math.BigDecimal;
-import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Utility class for finding which combination within a
@@ -20,8 +22,37 @@ import java.util.List;
  */
 public final class ComboFinder
 {
+   /**
+    * The default largest scaled amount to find the dynamic programming 
+    * search will build its table for, which is 10,000.00 for amounts
+    * with two decimal places.
+    */
+   public static final long DEFAULT_DYNAMIC_PROGRAMMING_LIMIT = 1_000_000L;
+   
+   /**
+    * The default time between each report to the progress listener, 
+    * which is one second.
+    */
+   public static final Duration DEFAULT_PROGRESS_INTERVAL = Duration.ofSeconds(1);
+   
    private Collection<ComboFinderElement> elements;
-   private BigDecimal amountToFind; 
+   private Collection<BigDecimal> amountsToFind;
+   private BigDecimal tolerance = BigDecimal.ZERO;
+   private ComboSearchStrategy strategy = ComboSearchStrategy.AUTOMATIC;
+   private ComboSolver solver = null;
+   private ComboDuplicateHandling duplicateHandling = ComboDuplicateHandling.SEPARATE;
+   private long dynamicProgrammingLimit = DEFAULT_DYNAMIC_PROGRAMMING_LIMIT;
+   private long dynamicProgrammingMemoryLimit = Runtime.getRuntime().maxMemory() / 4;
+   private long meetInTheMiddleMemoryLimit = Runtime.getRuntime().maxMemory() / 4;
+   private ForkJoinPool forkJoinPool = null;
+   private int maxResults = Integer.MAX_VALUE;
+   private Instant deadline = null;
+   private Duration timeLimit = null;
+   private long maxSteps = Long.MAX_VALUE;
+   private ComboCancellationToken cancellationToken = null;
+   private ComboProgressListener progressListener = null;
+   private Duration progressInterval = DEFAULT_PROGRESS_INTERVAL;
+   private ComboSearchStatus lastSearchStatus = null;
    
    /**
     * Constructor, setting the list of elements to search through and 
@@ -34,120 +65,511 @@ public final class ComboFinder
     */
    public ComboFinder(Collection<ComboFinderElement> elements, BigDecimal amountToFind)
    {
+      this(elements, Collections.singletonList(amountToFind));
+   }
+   
+   /**
+    * Constructor, setting the list of elements to search through and 
+    * the amounts to find combinations for. A single search is run for
+    * all the amounts, with each combination found once, matched to the
+    * amount its total is closest to. 
+    * 
+    * @param elements
+    *    The elements to search through.
+    * @param amountsToFind
+    *    The amounts to search for from all the combinations we can find. 
+    * @throws IllegalArgumentException
+    *    Thrown if no amounts to find are provided.
+    */
+   public ComboFinder(Collection<ComboFinderElement> elements, Collection<BigDecimal> amountsToFind)
+   {
+      if (amountsToFind == null || amountsToFind.isEmpty())
+      {
+         throw new IllegalArgumentException("At least one amount to find must be provided.");
+      }
       this.elements = elements;
-      this.amountToFind = amountToFind;
+      this.amountsToFind = amountsToFind;
    }
    
    /**
-    * Filters the list of elements to search for into a list with elements
-    * whoses amount is less than or equal to the amount being searched for.
+    * Provides how far a combination's total can be from an amount 
+    * being looked for and still be found. 
     * 
     * @return
-    *    The list of elements whose amounts are less than or equal to 
-    *    the amount being looked for. 
+    *    The tolerance, zero by default.
     */
-   private ArrayList<ComboFinderElement> filterListOfElements()
+   public BigDecimal getTolerance()
    {
-      ArrayList<ComboFinderElement> filteredResults = new ArrayList<>();
-      for (ComboFinderElement element : elements)
+      return tolerance;
+   }
+   
+   /**
+    * Sets how far a combination's total can be from an amount being
+    * looked for and still be found. When the tolerance is above zero, 
+    * the results of findCombinationsForAmount() are ordered by how 
+    * close they are to the amount they matched. 
+    * 
+    * @param tolerance
+    *    The tolerance. Null will use a tolerance of zero. 
+    * @throws IllegalArgumentException
+    *    Thrown if the tolerance is negative.
+    */
+   public void setTolerance(BigDecimal tolerance)
+   {
+      if (tolerance != null && tolerance.signum() < 0)
       {
-         if (element.getComboAmount().compareTo(amountToFind) < 1 && element.getComboAmount().compareTo(BigDecimal.ZERO) != 0)
-         {
-            filteredResults.add(element);
-         }
+         throw new IllegalArgumentException("The tolerance cannot be negative.");
       }
-      
-      // Sort the list by largest amount first to take advantage of the logic
-      // in the verify logic to stop adding once the amount is greater than 
-      // the amount we are searching for.
-      Collections.sort(filteredResults, new Comparator<ComboFinderElement>()
-         {
-            @Override
-            public int compare(ComboFinderElement o1, ComboFinderElement o2)
-            {
-               return o1.getComboAmount().compareTo(o2.getComboAmount()) * -1;
-            }
-         });;
-         
-      return filteredResults;
+      this.tolerance = tolerance == null ? BigDecimal.ZERO : tolerance;
    }
    
    /**
-    * Converts the big integer number to be a binary string whose length
-    * padded to the number of elements to search for. 
-    *  
-    * @param val
-    *    The value to convert into the binary string.
-    * @param paddingCount
-    *    The number of characters to pad the string to.
+    * Provides the strategy used to search for the combinations. 
+    * 
     * @return
-    *    The padded binary string.
+    *    The search strategy, AUTOMATIC by default.
     */
-   private String getBinaryString(BigInteger val, int paddingCount)
+   public ComboSearchStrategy getStrategy()
    {
-      String returnVal = val.toString(2);
-      while (returnVal.length() < paddingCount)
-      {
-         returnVal = "0" + returnVal;
-      }      
-      return returnVal;
+      return strategy;
+   }
+   
+   /**
+    * Sets the strategy used to search for the combinations.
+    * 
+    * @param strategy
+    *    The search strategy to use. Null will use the default
+    *    AUTOMATIC strategy.
+    */
+   public void setStrategy(ComboSearchStrategy strategy)
+   {
+      this.strategy = strategy == null ? ComboSearchStrategy.AUTOMATIC : strategy;
+   }
+   
+   /**
+    * Provides the custom solver used to search for the combinations. 
+    * 
+    * @return
+    *    The custom solver, or null if the strategy's solver is used.
+    */
+   public ComboSolver getSolver()
+   {
+      return solver;
    }
    
    /**
-    * Checks to see if the amount summed up by the indexes of "1"s in the 
-    * binary string equals the amount being searched for. 
+    * Sets a custom solver to search for the combinations in place of
+    * the strategy's solver, such as a {@link ComboSolverChooser} picking
+    * between a different set of solvers. When the solver does not support
+    * the elements and amounts being searched, BACKTRACKING is used.
+    * 
+    * @param solver
+    *    The custom solver, or null to use the strategy's solver.
+    */
+   public void setSolver(ComboSolver solver)
+   {
+      this.solver = solver;
+   }
+   
+   /**
+    * Provides how elements with the same amount are treated. 
     * 
-    * @param results
-    *    The filtered set of results.
-    * @param possibilityBString
-    *    The binary string to determine which indexes needs to be added 
-    *    together. 
     * @return
-    *    Null if the sum of the 1s in the binary string does not 
-    *    equal the amount being searched for. If the amount matches, the
-    *    FoundComboResultList is returned with the list of elements
-    *    that added up to the total.
+    *    The duplicate amount handling, SEPARATE by default.
     */
-   private FoundComboResultList verifyPossiblility(List<ComboFinderElement> results, String possibilityBString)
+   public ComboDuplicateHandling getDuplicateHandling()
    {
-      FoundComboResultList result = new FoundComboResultList();
-      BigDecimal total = BigDecimal.ZERO;
-      // Go through all the characters in the binary string.
-      for (int charIndex = 0; charIndex != possibilityBString.length(); ++charIndex)
+      return duplicateHandling;
+   }
+   
+   /**
+    * Sets how elements with the same amount are treated. When the 
+    * elements are grouped by amount, the search strategy is not used.
+    * 
+    * @param duplicateHandling
+    *    The duplicate amount handling to use. Null will use the default 
+    *    SEPARATE handling.
+    */
+   public void setDuplicateHandling(ComboDuplicateHandling duplicateHandling)
+   {
+      this.duplicateHandling = duplicateHandling == null ? ComboDuplicateHandling.SEPARATE : duplicateHandling;
+   }
+   
+   /**
+    * Provides the largest amount to find, scaled to a whole number by
+    * the most decimal places used within the amounts, that the dynamic 
+    * programming search will build its table for. 
+    * 
+    * @return
+    *    The dynamic programming limit.
+    */
+   public long getDynamicProgrammingLimit()
+   {
+      return dynamicProgrammingLimit;
+   }
+   
+   /**
+    * Sets the largest amount to find, scaled to a whole number by the 
+    * most decimal places used within the amounts, that the dynamic 
+    * programming search will build its table for. The table uses one 
+    * bit per element for every whole number up to the amount to find. 
+    * When there are negative amounts, the table also covers twice the 
+    * sum of the negative amounts, which counts against the limit.
+    * 
+    * @param dynamicProgrammingLimit
+    *    The dynamic programming limit.
+    */
+   public void setDynamicProgrammingLimit(long dynamicProgrammingLimit)
+   {
+      this.dynamicProgrammingLimit = dynamicProgrammingLimit;
+   }
+   
+   /**
+    * Provides the most memory, in bytes, the dynamic programming search
+    * may use for its table.
+    * 
+    * @return
+    *    The dynamic programming memory limit, a quarter of the maximum 
+    *    heap size by default.
+    */
+   public long getDynamicProgrammingMemoryLimit()
+   {
+      return dynamicProgrammingMemoryLimit;
+   }
+   
+   /**
+    * Sets the most memory, in bytes, the dynamic programming search may
+    * use for its table. The table holds a row of bits for every element,
+    * so it grows with both the element count and the range of totals, 
+    * and the search is not used when it would need more than the limit,
+    * with the AUTOMATIC strategy choosing between the other searches 
+    * instead.
+    * 
+    * @param dynamicProgrammingMemoryLimit
+    *    The dynamic programming memory limit.
+    */
+   public void setDynamicProgrammingMemoryLimit(long dynamicProgrammingMemoryLimit)
+   {
+      this.dynamicProgrammingMemoryLimit = dynamicProgrammingMemoryLimit;
+   }
+   
+   /**
+    * Provides the most memory, in bytes, the meet in the middle search
+    * may use for its subset totals.
+    * 
+    * @return
+    *    The meet in the middle memory limit, a quarter of the maximum 
+    *    heap size by default.
+    */
+   public long getMeetInTheMiddleMemoryLimit()
+   {
+      return meetInTheMiddleMemoryLimit;
+   }
+   
+   /**
+    * Sets the most memory, in bytes, the meet in the middle search may
+    * use for its subset totals. The search holds every subset total of
+    * each half of the elements, doubling the memory needed with every 
+    * two elements, and is not used when it would need more than the 
+    * limit, with the AUTOMATIC strategy choosing between the other 
+    * searches instead.
+    * 
+    * @param meetInTheMiddleMemoryLimit
+    *    The meet in the middle memory limit.
+    */
+   public void setMeetInTheMiddleMemoryLimit(long meetInTheMiddleMemoryLimit)
+   {
+      this.meetInTheMiddleMemoryLimit = meetInTheMiddleMemoryLimit;
+   }
+   
+   /**
+    * Provides the pool the PARALLEL strategy runs its search on.
+    * 
+    * @return
+    *    The pool set, or the common fork join pool if no pool was set.
+    */
+   public ForkJoinPool getForkJoinPool()
+   {
+      return forkJoinPool == null ? ForkJoinPool.commonPool() : forkJoinPool;
+   }
+   
+   /**
+    * Sets the pool the PARALLEL strategy runs its search on. 
+    * 
+    * @param forkJoinPool
+    *    The pool to use, or null to use the common fork join pool.
+    */
+   public void setForkJoinPool(ForkJoinPool forkJoinPool)
+   {
+      this.forkJoinPool = forkJoinPool;
+   }
+   
+   /**
+    * Provides the maximum number of combinations a search will find
+    * before stopping. 
+    * 
+    * @return
+    *    The maximum number of results, Integer.MAX_VALUE by default.
+    */
+   public int getMaxResults()
+   {
+      return maxResults;
+   }
+   
+   /**
+    * Sets the maximum number of combinations a search will find 
+    * before stopping. The AUTOMATIC strategy always uses BACKTRACKING
+    * when there is a maximum, so the combinations found are the first
+    * ones in search order.
+    * 
+    * @param maxResults
+    *    The maximum number of results. Values less than 1 remove 
+    *    the limit.
+    */
+   public void setMaxResults(int maxResults)
+   {
+      this.maxResults = maxResults < 1 ? Integer.MAX_VALUE : maxResults;
+   }
+   
+   /**
+    * Provides the time at which a search will stop, returning the 
+    * combinations found so far. 
+    * 
+    * @return
+    *    The deadline, or null if there is no deadline.
+    */
+   public Instant getDeadline()
+   {
+      return deadline;
+   }
+   
+   /**
+    * Sets the time at which a search will stop, returning the 
+    * combinations found so far. 
+    * 
+    * @param deadline
+    *    The deadline, or null for no deadline.
+    */
+   public void setDeadline(Instant deadline)
+   {
+      this.deadline = deadline;
+   }
+   
+   /**
+    * Provides how long each search can run for before stopping, 
+    * returning the combinations found so far.
+    * 
+    * @return
+    *    The time limit, or null if there is no time limit.
+    */
+   public Duration getTimeLimit()
+   {
+      return timeLimit;
+   }
+   
+   /**
+    * Sets how long each search can run for before stopping, returning
+    * the combinations found so far. Unlike the deadline, the limit 
+    * starts again with each search. When both are set, the search 
+    * stops at whichever comes first. 
+    * 
+    * @param timeLimit
+    *    The time limit, or null for no time limit.
+    */
+   public void setTimeLimit(Duration timeLimit)
+   {
+      this.timeLimit = timeLimit;
+   }
+   
+   /**
+    * Provides the number of steps each search can take before stopping. 
+    * 
+    * @return
+    *    The maximum number of steps, Long.MAX_VALUE by default.
+    */
+   public long getMaxSteps()
+   {
+      return maxSteps;
+   }
+   
+   /**
+    * Sets the number of steps each search can take before stopping, 
+    * returning the combinations found so far. A step is one decision
+    * within the search, such as whether to include an element, so the
+    * same elements and amounts always stop at the same point, unlike 
+    * a time limit. The steps are counted on each thread and only checked
+    * against the limit every few thousand steps, so the search may take 
+    * a few thousand steps more than the limit on each thread.
+    * 
+    * @param maxSteps
+    *    The maximum number of steps. Values less than 1 remove the limit.
+    */
+   public void setMaxSteps(long maxSteps)
+   {
+      this.maxSteps = maxSteps < 1 ? Long.MAX_VALUE : maxSteps;
+   }
+   
+   /**
+    * Provides the token that cancels the search.
+    * 
+    * @return
+    *    The cancellation token, or null if there is no token.
+    */
+   public ComboCancellationToken getCancellationToken()
+   {
+      return cancellationToken;
+   }
+   
+   /**
+    * Sets the token that cancels the search. The search checks the 
+    * token every few thousand steps, stopping shortly after it is 
+    * cancelled with the combinations found so far.
+    * 
+    * @param cancellationToken
+    *    The cancellation token, or null for no token.
+    */
+   public void setCancellationToken(ComboCancellationToken cancellationToken)
+   {
+      this.cancellationToken = cancellationToken;
+   }
+   
+   /**
+    * Provides the listener the progress of each search is reported to. 
+    * 
+    * @return
+    *    The progress listener, or null if there is no listener.
+    */
+   public ComboProgressListener getProgressListener()
+   {
+      return progressListener;
+   }
+   
+   /**
+    * Sets the listener the progress of each search is reported to, 
+    * every progress interval while the search runs and once more 
+    * when it finishes. 
+    * 
+    * @param progressListener
+    *    The progress listener, or null for no progress reporting.
+    */
+   public void setProgressListener(ComboProgressListener progressListener)
+   {
+      this.progressListener = progressListener;
+   }
+   
+   /**
+    * Provides the time between each report to the progress listener. 
+    * 
+    * @return
+    *    The progress interval, one second by default.
+    */
+   public Duration getProgressInterval()
+   {
+      return progressInterval;
+   }
+   
+   /**
+    * Sets the time between each report to the progress listener. 
+    * 
+    * @param progressInterval
+    *    The progress interval. Null will use the default interval of
+    *    one second.
+    */
+   public void setProgressInterval(Duration progressInterval)
+   {
+      this.progressInterval = progressInterval == null ? DEFAULT_PROGRESS_INTERVAL : progressInterval;
+   }
+   
+   /**
+    * Provides the reason the last search run by the finder finished,
+    * which tells if the combinations returned were all the combinations
+    * or only the ones found before the search was stopped. 
+    * 
+    * @return
+    *    The status of the last search, or null if no search has been run.
+    */
+   public ComboSearchStatus getLastSearchStatus()
+   {
+      return lastSearchStatus;
+   }
+   
+   /**
+    * Filters the list of elements to search for into a list with elements
+    * that can be part of a combination within the windows being searched 
+    * for. A positive amount is dropped when it is greater than the highest
+    * total even after adding every negative amount, and a negative amount 
+    * is dropped when it is less than the lowest total even after adding
+    * every positive amount. Without negative amounts, this keeps the 
+    * elements whose amount is less than or equal to the highest total.
+    * Each element's amount is only read once, as reading it may be 
+    * expensive.
+    * 
+    * @param windows
+    *    The windows of totals being searched for. 
+    * @param sortedElements
+    *    The list to add the elements that can be part of a combination 
+    *    to, sorted by largest absolute amount first. 
+    * @return
+    *    The amounts of the elements added to the list, in the same order.
+    */
+   private BigDecimal[] filterListOfElements(TargetWindows windows, List<ComboFinderElement> sortedElements)
+   {
+      List<ComboFinderElement> allElements = new ArrayList<>(elements);
+      final BigDecimal[] allAmounts = new BigDecimal[allElements.size()];
+      final BigDecimal[] absoluteAmounts = new BigDecimal[allAmounts.length];
+      BigDecimal positiveTotal = BigDecimal.ZERO;
+      BigDecimal negativeTotal = BigDecimal.ZERO;
+      for (int i = 0; i < allAmounts.length; i++)
       {
-         // If the current character equals 1, count the amount towards the total.
-         if (possibilityBString.charAt(charIndex) == '1')
+         allAmounts[i] = allElements.get(i).getComboAmount();
+         absoluteAmounts[i] = allAmounts[i].abs();
+         if (allAmounts[i].signum() > 0)
          {
-            ComboFinderElement ele = results.get(charIndex);
-            
-            result.comboElements.add(ele);
-            total = total.add(ele.getComboAmount());
-            
-            // The total is greater than the amount to find, no need to keep looking 
-            // at the number. 
-            if (total.compareTo(amountToFind) == 1)
-            {
-               result = null;
-               break;
-            }
+            positiveTotal = positiveTotal.add(allAmounts[i]);
+         }
+         else
+         {
+            negativeTotal = negativeTotal.add(allAmounts[i]);
          }
       }
       
-      // Hey, a match, return the list generated when finding the total. 
-      if (total.compareTo(amountToFind) == 0)
+      List<Integer> filteredIndexes = new ArrayList<>();
+      for (int i = 0; i < allAmounts.length; i++)
       {
-         return result;
+         BigDecimal amount = allAmounts[i];
+         if ((amount.signum() > 0 && amount.add(negativeTotal).compareTo(windows.getMaximum()) < 1) || 
+             (amount.signum() < 0 && amount.add(positiveTotal).compareTo(windows.getMinimum()) > -1))
+         {
+            filteredIndexes.add(i);
+         }
       }
-      // No match, return null.
-      else
+      
+      // Sort the list by largest absolute amount first to take advantage of 
+      // the logic in the searches to stop adding once the total can no 
+      // longer come back down to the amount we are searching for. The sort
+      // is stable, so equal amounts stay in the order they were passed in.
+      Collections.sort(filteredIndexes, new Comparator<Integer>()
+         {
+            @Override
+            public int compare(Integer o1, Integer o2)
+            {
+               return absoluteAmounts[o2].compareTo(absoluteAmounts[o1]);
+            }
+         });
+      
+      BigDecimal[] amounts = new BigDecimal[filteredIndexes.size()];
+      for (int i = 0; i < amounts.length; i++)
       {
-         return null;
+         sortedElements.add(allElements.get(filteredIndexes.get(i)));
+         amounts[i] = allAmounts[filteredIndexes.get(i)];
       }
+      return amounts;
    }
    
    /**
     * Determines all the possible combinations of elements will result in the 
-    * amount being looked for. 
+    * amount being looked for. When there is a tolerance, the combinations 
+    * closest to the amounts being looked for are listed first. 
     * 
     * @return
     *    The list of found combination results from the list of elements
@@ -156,38 +578,152 @@ public final class ComboFinder
     */
    public List<FoundComboResultList> findCombinationsForAmount()
    {
-      List<FoundComboResultList> results = new ArrayList<>();
+      final List<FoundComboResultList> results = new ArrayList<>();
+      ComboMatchCollector collector = search(results::add, maxResults);
+      if (collector.isOutOfOrder())
+      {
+         results.sort(ComboMatchCollector.SEARCH_ORDER);
+      }
+      if (tolerance.signum() > 0)
+      {
+         // The sort is stable, so matches as close as each other stay
+         // in the order they were found in.
+         results.sort(ComboMatchCollector.CLOSENESS);
+      }
+      return results;
+   }
+   
+   /**
+    * Searches for the combinations of elements that result in the amount 
+    * being looked for, passing each combination to the listener as soon as
+    * it is found instead of collecting them into a list. The search stops 
+    * once the maximum number of results have been found, the deadline 
+    * or time limit passes, the step limit is reached, the cancellation 
+    * token is cancelled, or the listener returns false. 
+    * 
+    * @param listener
+    *    The listener to pass the combinations to. 
+    * @return
+    *    The reason the search finished. 
+    */
+   public ComboSearchStatus findCombinationsForAmount(ComboResultListener listener)
+   {
+      search(listener, maxResults);
+      return lastSearchStatus;
+   }
+   
+   /**
+    * Finds the first combination of elements that results in the 
+    * amount being looked for, stopping the search once it is found. 
+    * 
+    * @return
+    *    The first combination found, or null if there are no
+    *    combinations for the amount.
+    */
+   public FoundComboResultList findFirstCombinationForAmount()
+   {
+      final List<FoundComboResultList> results = new ArrayList<>(1);
+      search(results::add, 1);
+      return results.isEmpty() ? null : results.get(0);
+   }
+   
+   /**
+    * Counts the combinations of elements that result in the amount being
+    * looked for. When the dynamic programming strategy is used, the 
+    * combinations are counted from the table without being created. 
+    * 
+    * @return
+    *    The number of combinations, or Long.MAX_VALUE if there are 
+    *    more combinations than a long can hold.
+    */
+   public long countCombinationsForAmount()
+   {
+      return search(null, Long.MAX_VALUE).getMatchCount();
+   }
+   
+   /**
+    * Filters and sorts the elements, and runs the search using the 
+    * strategy that applies to them. 
+    * 
+    * @param listener
+    *    The listener to pass the matches to, or null to only count
+    *    the matches.
+    * @param resultLimit
+    *    The number of matches to stop the search after.
+    * @return
+    *    The collector the matches were passed to.
+    */
+   private ComboMatchCollector search(ComboResultListener listener, long resultLimit)
+   {
+      lastSearchStatus = null;
       
       // Filter out any elements whose amount is higher than the amount we are looking for
-      List<ComboFinderElement> filteredResults = filterListOfElements();
+      TargetWindows windows = new TargetWindows(amountsToFind, tolerance);
+      List<ComboFinderElement> sortedElements = new ArrayList<>();
+      BigDecimal[] amounts = filterListOfElements(windows, sortedElements);
+      long stopAt = deadline == null ? Long.MAX_VALUE : deadline.toEpochMilli();
+      if (timeLimit != null)
+      {
+         stopAt = Math.min(stopAt, System.currentTimeMillis() + timeLimit.toMillis());
+      }
+      ComboMatchCollector collector = new ComboMatchCollector(
+            sortedElements, amounts, windows, listener, resultLimit, stopAt);
+      collector.setMaxSteps(maxSteps);
+      collector.setCancellationToken(cancellationToken);
+      collector.setProgressListener(progressListener, progressInterval.toMillis());
       
-      // If there is nothing to access, return the empty result set.
-      if (filteredResults.isEmpty())
+      runSearch(amounts, windows, collector, listener == null, resultLimit < Integer.MAX_VALUE);
+      collector.reportProgress(true);
+      lastSearchStatus = collector.getStatus();
+      return collector;
+   }
+   
+   /**
+    * Runs the search over the filtered and sorted elements. 
+    * 
+    * @param amounts
+    *    The amounts of the elements to search through. 
+    * @param windows
+    *    The windows of totals being looked for. 
+    * @param collector
+    *    The collector to pass the matches to. 
+    * @param countOnly
+    *    True if the matches are only being counted.
+    * @param limited
+    *    True if the search stops after a number of matches.
+    */
+   private void runSearch(BigDecimal[] amounts, TargetWindows windows, ComboMatchCollector collector, 
+         boolean countOnly, boolean limited)
+   {
+      // If there is nothing to access, there is nothing to find.
+      if (amounts.length == 0)
       {
-         return results;
+         return;
       }
       
-      // Determine the number of combination possibilities that need to be looked at (2 to 
-      // the power of the filtered element count.
-      BigInteger possibilityCount = new BigInteger("2").pow(filteredResults.size());
+      if (duplicateHandling != ComboDuplicateHandling.SEPARATE)
+      {
+         new DuplicateAmountSearch(amounts, windows, collector, 
+               duplicateHandling == ComboDuplicateHandling.DISTINCT_AMOUNTS, countOnly).search();
+         return;
+      }
       
-      // Start at 1, as 0 will never match.
-      BigInteger possibilityIndex = new BigInteger("1");
+      ComboSearchContext context = new ComboSearchContext(
+            amounts, windows, collector, countOnly, dynamicProgrammingLimit, 
+            dynamicProgrammingMemoryLimit, meetInTheMiddleMemoryLimit, getForkJoinPool());
+      ComboSolver chosen = solver == null ? strategy.getSolver() : solver;
       
-      while (possibilityIndex.compareTo(possibilityCount) < 0)
+      // The other searches find the matches in a different order, so a 
+      // search stopping after a number of matches would return different
+      // combinations depending on which search was chosen.
+      if (solver == null && strategy == ComboSearchStrategy.AUTOMATIC && limited)
       {
-         String bString = getBinaryString(possibilityIndex, filteredResults.size());
-         FoundComboResultList result = verifyPossiblility(filteredResults, bString);
-         
-         if (result != null)
-         {
-            results.add(result);
-         }
-         
-         // Increment the index by one. 
-         possibilityIndex = possibilityIndex.add(BigInteger.ONE);
+         chosen = ComboSearchStrategy.BACKTRACKING.getSolver();
       }
-      
-      return results;
+      if (!chosen.supports(context))
+      {
+         chosen = ComboSearchStrategy.BACKTRACKING.getSolver();
+      }
+      chosen.solve(context);
    }
 }
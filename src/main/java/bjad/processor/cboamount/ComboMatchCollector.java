@@ -0,0 +1,384 @@
+package bjad.processor.cboamount;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Collects the combinations found by the search strategies, 
+ * passing each one to the result listener and stopping the 
+ * search when the listener, the maximum number of results, the
+ * deadline, the step limit or the cancellation token says so. 
+ * Matches are passed in as bit masks of the indexes of the elements
+ * in the combination. The strategies also report the parts of the 
+ * search space they have finished with, which are added up for the
+ * progress listener. The collector is safe to pass matches to from
+ * multiple threads.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+final class ComboMatchCollector
+{
+   /**
+    * Orders results by how close their total is to the amount being 
+    * looked for that they are closest to. 
+    */
+   static final Comparator<FoundComboResultList> CLOSENESS = 
+         Comparator.comparing((FoundComboResultList r) -> r.getDifference().abs());
+   
+   /**
+    * Orders results by the order the backtracking search finds them 
+    * in, which is the order of counting through the elements in binary
+    * with the first element as the highest bit. At the lowest index 
+    * only one combination contains, the combination without it comes
+    * first.
+    */
+   static final Comparator<FoundComboResultList> SEARCH_ORDER = (o1, o2) -> 
+   {
+      for (int word = 0; word < o1.mask.length; word++)
+      {
+         long difference = o1.mask[word] ^ o2.mask[word];
+         if (difference != 0)
+         {
+            return (o1.mask[word] & Long.lowestOneBit(difference)) != 0 ? 1 : -1;
+         }
+      }
+      return 0;
+   };
+   
+   /** 
+    * The number of times each thread checks if the search should 
+    * stop between each check of the step limit, the clock and the
+    * cancellation token, minus one.
+    */
+   private static final int PERIODIC_CHECK_MASK = 0xFFF;
+   
+   private final List<ComboFinderElement> sortedElements;
+   private final BigDecimal[] amounts;
+   private final TargetWindows windows;
+   private final ComboResultListener listener;
+   private final long maxResults;
+   private final long deadline;
+   private long matchCount = 0;
+   private final AtomicLong steps = new AtomicLong();
+   private final ThreadLocal<long[]> threadSteps = ThreadLocal.withInitial(() -> new long[1]);
+   private long maxSteps = Long.MAX_VALUE;
+   private ComboCancellationToken cancellationToken = null;
+   private ComboProgressListener progressListener = null;
+   private long progressInterval = 0;
+   private long nextProgress = 0;
+   private final DoubleAdder explored = new DoubleAdder();
+   private boolean periodicChecks = false;
+   private boolean outOfOrder = false;
+   private volatile ComboSearchStatus status = null;
+   
+   /**
+    * Constructor, setting up the collector for a search. 
+    * 
+    * @param sortedElements
+    *    The filtered and sorted elements being searched through.
+    * @param amounts
+    *    The amounts of the sorted elements.
+    * @param windows
+    *    The windows of totals being looked for. 
+    * @param listener
+    *    The listener to pass the matches to, or null to only count
+    *    the matches.
+    * @param maxResults
+    *    The number of matches to stop the search after.
+    * @param deadline
+    *    The time, in milliseconds since the epoch, to stop the 
+    *    search at, or Long.MAX_VALUE for no deadline.
+    */
+   ComboMatchCollector(List<ComboFinderElement> sortedElements, BigDecimal[] amounts, TargetWindows windows, 
+         ComboResultListener listener, long maxResults, long deadline)
+   {
+      this.sortedElements = sortedElements;
+      this.amounts = amounts;
+      this.windows = windows;
+      this.listener = listener;
+      this.maxResults = maxResults;
+      this.deadline = deadline;
+      this.periodicChecks = deadline != Long.MAX_VALUE;
+   }
+   
+   /**
+    * Sets the number of steps the search can take before stopping, 
+    * where each check of {@link #isStopped()} is a step. The limit is
+    * only checked every few thousand steps on each thread.
+    * 
+    * @param maxSteps
+    *    The maximum number of steps.
+    */
+   void setMaxSteps(long maxSteps)
+   {
+      this.maxSteps = maxSteps;
+   }
+   
+   /**
+    * Sets the token that stops the search when cancelled. 
+    * 
+    * @param cancellationToken
+    *    The token to check, or null for no token.
+    */
+   void setCancellationToken(ComboCancellationToken cancellationToken)
+   {
+      this.cancellationToken = cancellationToken;
+      periodicChecks |= cancellationToken != null;
+   }
+   
+   /**
+    * Sets the listener to report the progress of the search to. 
+    * 
+    * @param progressListener
+    *    The listener to report to, or null for no progress reporting.
+    * @param progressInterval
+    *    The number of milliseconds between each report. 
+    */
+   void setProgressListener(ComboProgressListener progressListener, long progressInterval)
+   {
+      this.progressListener = progressListener;
+      this.progressInterval = progressInterval;
+      this.nextProgress = System.currentTimeMillis() + progressInterval;
+      periodicChecks |= progressListener != null;
+   }
+   
+   /**
+    * Adds a matching combination. 
+    * 
+    * @param mask
+    *    The bit mask of the indexes of the elements within the combination.
+    *    The collector copies the mask, so the array can be reused.
+    */
+   void addMatch(long[] mask)
+   {
+      FoundComboResultList result = null;
+      if (listener != null)
+      {
+         result = new FoundComboResultList(sortedElements, mask.clone());
+         if (windows.isExact())
+         {
+            result.setMatch(windows.getMinimum(), windows.getMinimum());
+         }
+         else
+         {
+            BigDecimal total = BigDecimal.ZERO;
+            for (int word = 0; word < mask.length; word++)
+            {
+               for (long bits = mask[word]; bits != 0; bits &= bits - 1)
+               {
+                  total = total.add(amounts[(word << 6) + Long.numberOfTrailingZeros(bits)]);
+               }
+            }
+            result.setMatch(total, windows.nearestTarget(total));
+         }
+      }
+      
+      synchronized (this)
+      {
+         if (status != null)
+         {
+            return;
+         }
+         addMatchCount(1);
+         if (result != null && !listener.combinationFound(result))
+         {
+            stop(ComboSearchStatus.STOPPED_BY_LISTENER);
+         }
+      }
+   }
+   
+   /**
+    * Adds to the number of matches without passing the matches 
+    * themselves, for strategies that can count the matches 
+    * without finding them. 
+    * 
+    * @param count
+    *    The number of matches to add.
+    */
+   synchronized void addMatchCount(long count)
+   {
+      matchCount = matchCount + count < 0 ? Long.MAX_VALUE : matchCount + count;
+      if (matchCount >= maxResults)
+      {
+         stop(ComboSearchStatus.MAX_RESULTS_REACHED);
+      }
+   }
+   
+   /**
+    * Checks to see if the search should stop, which the search 
+    * strategies call as they go, with each call counting as a step. 
+    * The steps are counted on each thread and only added to the total
+    * every few thousand steps, when the step limit, the clock and the
+    * cancellation token are checked. The steps are not counted when 
+    * there is nothing to check.
+    * 
+    * @return
+    *    True if the search should stop.
+    */
+   boolean isStopped()
+   {
+      if (status != null)
+      {
+         return true;
+      }
+      if (maxSteps == Long.MAX_VALUE && !periodicChecks)
+      {
+         return false;
+      }
+      
+      // Each thread counts its own steps, so the threads of a parallel
+      // search are not all writing to the same counter at every step.
+      long[] counted = threadSteps.get();
+      if ((++counted[0] & PERIODIC_CHECK_MASK) != 0)
+      {
+         return false;
+      }
+      if (steps.addAndGet(PERIODIC_CHECK_MASK + 1) > maxSteps)
+      {
+         stop(ComboSearchStatus.STEP_LIMIT_REACHED);
+         return true;
+      }
+      return periodicChecks && checkPeriodically();
+   }
+   
+   /**
+    * Checks the cancellation token and the clock, stopping the search
+    * if the token was cancelled or the deadline has passed, and 
+    * reporting the progress when it is due.
+    * 
+    * @return
+    *    True if the search should stop.
+    */
+   private boolean checkPeriodically()
+   {
+      if (cancellationToken != null && cancellationToken.isCancelled())
+      {
+         stop(ComboSearchStatus.CANCELLED);
+         return true;
+      }
+      
+      long now = System.currentTimeMillis();
+      if (now >= deadline)
+      {
+         stop(ComboSearchStatus.DEADLINE_REACHED);
+         return true;
+      }
+      if (progressListener != null && now >= nextProgress)
+      {
+         reportProgress(false);
+      }
+      return false;
+   }
+   
+   /**
+    * Marks a part of the search space as explored or ruled out.
+    * 
+    * @param fraction
+    *    The fraction of the whole search space explored.
+    */
+   void addExplored(double fraction)
+   {
+      if (progressListener != null)
+      {
+         explored.add(fraction);
+      }
+   }
+   
+   /**
+    * Marks the subtree at the depth passed, of a search deciding on
+    * one element per depth, as explored or ruled out. 
+    * 
+    * @param depth
+    *    The number of elements decided on above the subtree.
+    */
+   void addExploredAtDepth(int depth)
+   {
+      if (progressListener != null)
+      {
+         explored.add(Math.scalb(1.0, -depth));
+      }
+   }
+   
+   /**
+    * Reports the progress of the search to the progress listener, if
+    * there is one. 
+    * 
+    * @param finished
+    *    True if the search has finished, in which case a search that 
+    *    was not stopped is reported as fully explored.
+    */
+   synchronized void reportProgress(boolean finished)
+   {
+      if (progressListener == null)
+      {
+         return;
+      }
+      nextProgress = System.currentTimeMillis() + progressInterval;
+      double fraction = finished && status == null ? 1.0 : Math.min(1.0, explored.sum());
+      progressListener.progressUpdated(fraction, matchCount);
+   }
+   
+   /**
+    * Stops the search, keeping the first reason given.
+    * 
+    * @param reason
+    *    The reason the search is stopping. 
+    */
+   synchronized void stop(ComboSearchStatus reason)
+   {
+      if (status == null)
+      {
+         status = reason;
+      }
+   }
+   
+   /**
+    * Provides the reason the search finished.
+    * 
+    * @return
+    *    The reason the search stopped, or COMPLETE if it was 
+    *    never stopped.
+    */
+   ComboSearchStatus getStatus()
+   {
+      ComboSearchStatus current = status;
+      return current == null ? ComboSearchStatus.COMPLETE : current;
+   }
+   
+   /**
+    * Provides the number of matches passed to the collector.
+    * 
+    * @return
+    *    The number of matches.
+    */
+   synchronized long getMatchCount()
+   {
+      return matchCount;
+   }
+   
+   /**
+    * Marks the matches as being passed to the collector out of 
+    * search order, which happens when the search runs on multiple 
+    * threads.
+    */
+   void setOutOfOrder()
+   {
+      outOfOrder = true;
+   }
+   
+   /**
+    * Checks if the matches were passed to the collector out of 
+    * search order. 
+    * 
+    * @return
+    *    True if the matches need sorting into search order.
+    */
+   boolean isOutOfOrder()
+   {
+      return outOfOrder;
+   }
+}
@@ -0,0 +1,26 @@
+package bjad.processor.cboamount;
+
+import java.util.EventListener;
+
+/**
+ * Listener interface the ComboFinder reports the progress of a 
+ * search to while it runs, and once more when it finishes.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+public interface ComboProgressListener extends EventListener
+{
+   /**
+    * The method that will be fired periodically while a search runs.
+    * It is called from the thread running the search, so it should 
+    * return quickly.
+    * 
+    * @param fractionExplored
+    *    The fraction of the search space that has been explored or 
+    *    ruled out so far, from 0.0 to 1.0. 
+    * @param matchesFound
+    *    The number of combinations found so far. 
+    */
+   public void progressUpdated(double fractionExplored, long matchesFound);
+}
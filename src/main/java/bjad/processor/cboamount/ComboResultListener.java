@@ -0,0 +1,27 @@
+package bjad.processor.cboamount;
+
+import java.util.EventListener;
+
+/**
+ * Listener interface the ComboFinder passes each combination
+ * to as soon as it is found, rather than collecting every 
+ * combination into a list.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+public interface ComboResultListener extends EventListener
+{
+   /**
+    * The method that will be fired for each combination found.
+    * When the PARALLEL strategy is used, the combinations are passed
+    * one at a time but in no particular order.
+    * 
+    * @param result
+    *    The combination found. The elements within the combination
+    *    are only put into a list when the list is asked for.
+    * @return
+    *    True to keep searching, false to stop the search.
+    */
+   public boolean combinationFound(FoundComboResultList result);
+}
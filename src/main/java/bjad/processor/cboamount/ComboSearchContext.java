@@ -0,0 +1,311 @@
+package bjad.processor.cboamount;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The elements and amounts a solver is searching through, and where
+ * the solver passes the matches it finds. The elements are filtered
+ * down to the ones that can be part of a match and sorted largest
+ * absolute amount first, and are referred to by their index within
+ * that order. Matches are passed as bit masks of those indexes, with
+ * index i being bit (i % 64) of word (i / 64).
+ *
+ * @author
+ *   Ben Dougall
+ */
+public final class ComboSearchContext
+{
+   private final BigDecimal[] amounts;
+   private final TargetWindows windows;
+   private final ComboMatchCollector collector;
+   private final boolean countOnly;
+   private final long dynamicProgrammingLimit;
+   private final long dynamicProgrammingMemoryLimit;
+   private final long meetInTheMiddleMemoryLimit;
+   private final ForkJoinPool forkJoinPool;
+   private ScaledAmounts scaledAmounts = null;
+   private boolean scaled = false;
+   
+   /**
+    * Constructor, setting up the context for a search.
+    *
+    * @param amounts
+    *    The amounts of the filtered and sorted elements.
+    * @param windows
+    *    The windows of totals being looked for.
+    * @param collector
+    *    The collector to pass the matches to.
+    * @param countOnly
+    *    True if the matches are only being counted.
+    * @param dynamicProgrammingLimit
+    *    The largest range of scaled totals the dynamic programming
+    *    search can build its table for.
+    * @param dynamicProgrammingMemoryLimit
+    *    The most memory, in bytes, the dynamic programming search
+    *    may use for its table.
+    * @param meetInTheMiddleMemoryLimit
+    *    The most memory, in bytes, the meet in the middle search may
+    *    use for its subset totals.
+    * @param forkJoinPool
+    *    The pool to run parallel searches on.
+    */
+   ComboSearchContext(BigDecimal[] amounts, TargetWindows windows, ComboMatchCollector collector,
+         boolean countOnly, long dynamicProgrammingLimit, long dynamicProgrammingMemoryLimit, 
+         long meetInTheMiddleMemoryLimit, ForkJoinPool forkJoinPool)
+   {
+      this.amounts = amounts;
+      this.windows = windows;
+      this.collector = collector;
+      this.countOnly = countOnly;
+      this.dynamicProgrammingLimit = dynamicProgrammingLimit;
+      this.dynamicProgrammingMemoryLimit = dynamicProgrammingMemoryLimit;
+      this.meetInTheMiddleMemoryLimit = meetInTheMiddleMemoryLimit;
+      this.forkJoinPool = forkJoinPool;
+   }
+   
+   /**
+    * Provides the number of elements being searched through.
+    *
+    * @return
+    *    The element count.
+    */
+   public int getElementCount()
+   {
+      return amounts.length;
+   }
+   
+   /**
+    * Provides the amount of the element at the index passed.
+    *
+    * @param index
+    *    The index of the element.
+    * @return
+    *    The element's amount.
+    */
+   public BigDecimal getAmount(int index)
+   {
+      return amounts[index];
+   }
+   
+   /**
+    * Provides the number of windows of totals being looked for. The
+    * windows are sorted from lowest to highest and do not overlap.
+    *
+    * @return
+    *    The window count.
+    */
+   public int getWindowCount()
+   {
+      return windows.size();
+   }
+   
+   /**
+    * Provides the lowest total within the window at the index passed.
+    *
+    * @param index
+    *    The index of the window.
+    * @return
+    *    The lowest total, inclusive.
+    */
+   public BigDecimal getWindowLow(int index)
+   {
+      return windows.getLow(index);
+   }
+   
+   /**
+    * Provides the highest total within the window at the index passed.
+    *
+    * @param index
+    *    The index of the window.
+    * @return
+    *    The highest total, inclusive.
+    */
+   public BigDecimal getWindowHigh(int index)
+   {
+      return windows.getHigh(index);
+   }
+   
+   /**
+    * Checks if the total passed is within any of the windows.
+    *
+    * @param total
+    *    The total to check.
+    * @return
+    *    True if a combination with the total is a match.
+    */
+   public boolean isMatch(BigDecimal total)
+   {
+      return windows.contains(total);
+   }
+   
+   /**
+    * Checks if the matches are only being counted, in which case a
+    * solver that can count the matches without finding them can pass
+    * the count to {@link #addMatchCount(long)} instead.
+    *
+    * @return
+    *    True if the matches are only being counted.
+    */
+   public boolean isCountOnly()
+   {
+      return countOnly;
+   }
+   
+   /**
+    * Checks to see if the search should stop, which solvers should
+    * call at each step of the search.
+    *
+    * @return
+    *    True if the search should stop.
+    */
+   public boolean isStopped()
+   {
+      return collector.isStopped();
+   }
+   
+   /**
+    * Passes a matching combination on. The empty combination is
+    * never a match and should not be passed.
+    *
+    * @param mask
+    *    The bit mask of the indexes of the elements within the combination.
+    *    The mask is copied, so the array can be reused.
+    */
+   public void addMatch(long[] mask)
+   {
+      collector.addMatch(mask);
+   }
+   
+   /**
+    * Adds to the number of matches without passing the matches
+    * themselves, for solvers that can count the matches without
+    * finding them when only the count is wanted.
+    *
+    * @param count
+    *    The number of matches to add.
+    */
+   public void addMatchCount(long count)
+   {
+      collector.addMatchCount(count);
+   }
+   
+   /**
+    * Marks a part of the search space as explored or ruled out, for
+    * the progress reported while the search runs.
+    *
+    * @param fraction
+    *    The fraction of the whole search space explored.
+    */
+   public void addExplored(double fraction)
+   {
+      collector.addExplored(fraction);
+   }
+   
+   /**
+    * Marks the matches as being passed out of the order the backtracking
+    * search finds them in, so they are sorted into that order before
+    * being returned as a list.
+    */
+   public void setOutOfOrder()
+   {
+      collector.setOutOfOrder();
+   }
+   
+   /**
+    * Provides the amounts of the elements.
+    *
+    * @return
+    *    The amounts, which must not be changed.
+    */
+   BigDecimal[] getAmounts()
+   {
+      return amounts;
+   }
+   
+   /**
+    * Provides the windows of totals being looked for.
+    *
+    * @return
+    *    The windows.
+    */
+   TargetWindows getWindows()
+   {
+      return windows;
+   }
+   
+   /**
+    * Provides the collector the matches are passed to.
+    *
+    * @return
+    *    The collector.
+    */
+   ComboMatchCollector getCollector()
+   {
+      return collector;
+   }
+   
+   /**
+    * Provides the amounts and windows as scaled long values, converting
+    * them the first time they are asked for.
+    *
+    * @return
+    *    The scaled amounts, or null if they do not fit in a long.
+    */
+   ScaledAmounts getScaledAmounts()
+   {
+      if (!scaled)
+      {
+         scaledAmounts = ScaledAmounts.of(amounts, windows);
+         scaled = true;
+      }
+      return scaledAmounts;
+   }
+   
+   /**
+    * Provides the largest range of scaled totals the dynamic
+    * programming search can build its table for.
+    *
+    * @return
+    *    The dynamic programming limit.
+    */
+   long getDynamicProgrammingLimit()
+   {
+      return dynamicProgrammingLimit;
+   }
+   
+   /**
+    * Provides the most memory, in bytes, the dynamic programming
+    * search may use for its table.
+    *
+    * @return
+    *    The dynamic programming memory limit.
+    */
+   long getDynamicProgrammingMemoryLimit()
+   {
+      return dynamicProgrammingMemoryLimit;
+   }
+   
+   /**
+    * Provides the most memory, in bytes, the meet in the middle
+    * search may use for its subset totals.
+    *
+    * @return
+    *    The meet in the middle memory limit.
+    */
+   long getMeetInTheMiddleMemoryLimit()
+   {
+      return meetInTheMiddleMemoryLimit;
+   }
+   
+   /**
+    * Provides the pool to run parallel searches on.
+    *
+    * @return
+    *    The fork join pool.
+    */
+   ForkJoinPool getForkJoinPool()
+   {
+      return forkJoinPool;
+   }
+}
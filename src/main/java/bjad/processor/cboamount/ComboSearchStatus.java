@@ -0,0 +1,23 @@
+package bjad.processor.cboamount;
+
+/**
+ * The reasons a ComboFinder search finished.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+public enum ComboSearchStatus
+{
+   /** Every combination was searched through. */
+   COMPLETE,
+   /** The maximum number of results was found. */
+   MAX_RESULTS_REACHED,
+   /** The deadline, or the time limit, passed before the search was finished. */
+   DEADLINE_REACHED,
+   /** The result listener asked for the search to stop. */
+   STOPPED_BY_LISTENER,
+   /** The cancellation token was cancelled before the search was finished. */
+   CANCELLED,
+   /** The maximum number of steps was taken before the search was finished. */
+   STEP_LIMIT_REACHED
+}
@@ -0,0 +1,117 @@
+package bjad.processor.cboamount;
+
+/**
+ * The search strategies the ComboFinder can use to find the
+ * combinations of elements that add up to the amount being
+ * looked for. Each strategy provides the solver that runs it.
+ * When the solver does not support the elements and amounts being
+ * searched, the finder falls back to BACKTRACKING.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public enum ComboSearchStrategy
+{
+   /**
+    * Estimates the cost of the BACKTRACKING, DYNAMIC_PROGRAMMING and
+    * MEET_IN_THE_MIDDLE strategies from the number of elements and
+    * the precision and size of the amounts, and uses the cheapest.
+    * MEET_IN_THE_MIDDLE is only considered when its subset totals fit
+    * within the finder's meet in the middle memory limit, and 
+    * DYNAMIC_PROGRAMMING only when its table fits within the finder's
+    * dynamic programming memory limit.
+    * All three return the same combinations, and in the same order
+    * when returned as a list. When the search stops after a maximum 
+    * number of results, or after the first combination, BACKTRACKING 
+    * is always used, so the combinations found are the first ones in 
+    * search order.
+    */
+   AUTOMATIC(null),
+   /**
+    * Looks at every subset of the elements without any pruning,
+    * returning the combinations in the same order as BACKTRACKING.
+    * Only practical for small lists, and useful for checking the
+    * results of the other strategies.
+    */
+   EXHAUSTIVE(new ExhaustiveSearch.Solver()),
+   /**
+    * Depth first search through the elements, dropping any path
+    * whose total passes the amount being looked for or can no longer
+    * reach it. Combinations are returned in the same order as counting
+    * through the elements in binary. Best for up to about 30 elements.
+    */
+   BACKTRACKING(new BacktrackingSearch.Solver()),
+   /**
+    * Splits the elements in half, works out every subset total of each
+    * half, and then joins the sorted totals together to find the matches.
+    * Takes roughly 2 to the power of half the element count steps and memory,
+    * making 40 to 60 elements practical when there is the memory for it,
+    * about 200 MB at 44 elements and 1.2 GB at 50. The combinations are 
+    * passed to a result listener in no particular order, and sorted into 
+    * the same order as BACKTRACKING when returned as a list. Falls back to 
+    * BACKTRACKING when there are more than 60 elements, the subset totals
+    * would not fit within the finder's meet in the middle memory limit, or
+    * the amounts cannot be represented as scaled long values.
+    */
+   MEET_IN_THE_MIDDLE(new MeetInTheMiddleSearch.Solver()),
+   /**
+    * Converts the amounts to scaled whole numbers (cents for amounts
+    * with two decimal places) and builds a table of which totals can
+    * be reached, taking roughly the element count multiplied by the
+    * scaled amount to find divided by 64 steps. Suited for hundreds of
+    * elements when the amount to find is within the dynamic programming
+    * limit of the finder. Falls back to BACKTRACKING when the amount to
+    * find, plus twice the sum of any negative amounts, is over the limit,
+    * or the table would not fit within the finder's dynamic programming
+    * memory limit.
+    */
+   DYNAMIC_PROGRAMMING(new DynamicProgrammingSearch.Solver()),
+   /**
+    * Runs the BACKTRACKING search across the threads of a fork join
+    * pool, handing off branches of the search to idle threads. The
+    * combinations returned are the same, and in the same order, as
+    * BACKTRACKING. When stopping after the first combination, the
+    * combination returned may be any of the matches.
+    */
+   PARALLEL(new ParallelBacktrackingSearch.Solver());
+   
+   private final ComboSolver solver;
+   
+   /**
+    * Constructor, setting the solver that runs the strategy.
+    *
+    * @param solver
+    *    The solver, or null for the automatic strategy.
+    */
+   private ComboSearchStrategy(ComboSolver solver)
+   {
+      this.solver = solver;
+   }
+   
+   /**
+    * Provides the solver that runs the strategy, which can be used to
+    * build a {@link ComboSolverChooser} out of the built in solvers.
+    *
+    * @return
+    *    The solver for the strategy. For AUTOMATIC, this is a chooser
+    *    picking between the BACKTRACKING, DYNAMIC_PROGRAMMING and
+    *    MEET_IN_THE_MIDDLE solvers.
+    */
+   public ComboSolver getSolver()
+   {
+      return this == AUTOMATIC ? AutomaticSolver.INSTANCE : solver;
+   }
+   
+   /**
+    * Holder for the automatic strategy's chooser, which is created
+    * once the other strategies' solvers exist.
+    *
+    * @author
+    *   Ben Dougall
+    */
+   private static final class AutomaticSolver
+   {
+      private static final ComboSolverChooser INSTANCE = new ComboSolverChooser(
+            BACKTRACKING.getSolver(), DYNAMIC_PROGRAMMING.getSolver(), MEET_IN_THE_MIDDLE.getSolver());
+   }
+}
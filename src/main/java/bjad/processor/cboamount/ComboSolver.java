@@ -0,0 +1,47 @@
+package bjad.processor.cboamount;
+
+/**
+ * Service provider interface for the searches the ComboFinder can
+ * run to find the combinations of elements that add up to the amounts
+ * being looked for. The built in solvers are provided by
+ * {@link ComboSearchStrategy#getSolver()}, and a custom solver can be
+ * set on the finder with {@link ComboFinder#setSolver(ComboSolver)}.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public interface ComboSolver
+{
+   /**
+    * Checks if the solver can search the elements and amounts within
+    * the context.
+    *
+    * @param context
+    *    The elements and amounts being searched.
+    * @return
+    *    True if the solver can run the search.
+    */
+   public boolean supports(ComboSearchContext context);
+   
+   /**
+    * Estimates the number of steps the solver would take to search
+    * the elements and amounts within the context, which is used to
+    * pick the cheapest solver. Only called when the solver supports
+    * the context.
+    *
+    * @param context
+    *    The elements and amounts being searched.
+    * @return
+    *    The estimated number of steps.
+    */
+   public double estimateCost(ComboSearchContext context);
+   
+   /**
+    * Runs the search, passing every match found to the context and
+    * stopping once the context says the search is stopped.
+    *
+    * @param context
+    *    The elements and amounts being searched.
+    */
+   public void solve(ComboSearchContext context);
+}
@@ -0,0 +1,101 @@
+package bjad.processor.cboamount;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Solver that picks the cheapest of a list of solvers for each
+ * search, based on the cost each solver estimates from the number of
+ * elements and the precision and size of the amounts.
+ *
+ * @author
+ *   Ben Dougall
+ */
+public class ComboSolverChooser implements ComboSolver
+{
+   private final List<ComboSolver> candidates;
+   
+   /**
+    * Constructor, setting the solvers to choose from.
+    *
+    * @param candidates
+    *    The solvers to choose from. When solvers estimate the same
+    *    cost, the first one listed is used.
+    */
+   public ComboSolverChooser(ComboSolver... candidates)
+   {
+      this(Arrays.asList(candidates));
+   }
+   
+   /**
+    * Constructor, setting the solvers to choose from.
+    *
+    * @param candidates
+    *    The solvers to choose from. When solvers estimate the same
+    *    cost, the first one listed is used.
+    */
+   public ComboSolverChooser(List<ComboSolver> candidates)
+   {
+      this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+   }
+   
+   /**
+    * Provides the solvers being chosen from.
+    *
+    * @return
+    *    The list of solvers, which cannot be changed.
+    */
+   public List<ComboSolver> getCandidates()
+   {
+      return candidates;
+   }
+   
+   /**
+    * Picks the solver with the lowest estimated cost out of the
+    * solvers that support the context.
+    *
+    * @param context
+    *    The elements and amounts being searched.
+    * @return
+    *    The cheapest solver, or null if no solver supports the context.
+    */
+   public ComboSolver choose(ComboSearchContext context)
+   {
+      ComboSolver cheapest = null;
+      double cheapestCost = Double.POSITIVE_INFINITY;
+      for (ComboSolver candidate : candidates)
+      {
+         if (candidate.supports(context))
+         {
+            double cost = candidate.estimateCost(context);
+            if (cheapest == null || cost < cheapestCost)
+            {
+               cheapest = candidate;
+               cheapestCost = cost;
+            }
+         }
+      }
+      return cheapest;
+   }
+   
+   @Override
+   public boolean supports(ComboSearchContext context)
+   {
+      return choose(context) != null;
+   }
+   
+   @Override
+   public double estimateCost(ComboSearchContext context)
+   {
+      ComboSolver cheapest = choose(context);
+      return cheapest == null ? Double.POSITIVE_INFINITY : cheapest.estimateCost(context);
+   }
+   
+   @Override
+   public void solve(ComboSearchContext context)
+   {
+      choose(context).solve(context);
+   }
+}
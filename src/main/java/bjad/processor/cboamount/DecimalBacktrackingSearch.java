@@ -0,0 +1,124 @@
+package bjad.processor.cboamount;
+
+import java.math.BigDecimal;
+
+/**
+ * The backtracking search run with BigDecimal arithmetic, for when 
+ * the amounts cannot be converted to scaled long values. Finds the
+ * same combinations, in the same order, as {@link BacktrackingSearch}.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+final class DecimalBacktrackingSearch
+{
+   private final BigDecimal[] amounts;
+   private final TargetWindows windows;
+   private final BigDecimal maximum;
+   private final ComboMatchCollector collector;
+   private final BigDecimal[] remainingPositiveAmounts;
+   private final BigDecimal[] remainingNegativeAmounts;
+   
+   /**
+    * Constructor, setting up the search. 
+    * 
+    * @param amounts
+    *    The amounts of the elements, sorted largest absolute amount first.
+    * @param windows
+    *    The windows of totals to find the combinations for.
+    * @param collector
+    *    The collector to pass the matches to.
+    */
+   DecimalBacktrackingSearch(BigDecimal[] amounts, TargetWindows windows, ComboMatchCollector collector)
+   {
+      this.amounts = amounts;
+      this.windows = windows;
+      this.maximum = windows.getMaximum();
+      this.collector = collector;
+      
+      // Determine the sum of the positive and the negative amounts from each 
+      // index to the end of the list, which bound the totals that can still 
+      // be made, so the search can stop going down a path that can no longer
+      // reach any amount we are looking for.
+      remainingPositiveAmounts = new BigDecimal[amounts.length + 1];
+      remainingNegativeAmounts = new BigDecimal[amounts.length + 1];
+      remainingPositiveAmounts[amounts.length] = BigDecimal.ZERO;
+      remainingNegativeAmounts[amounts.length] = BigDecimal.ZERO;
+      for (int i = amounts.length - 1; i >= 0; i--)
+      {
+         remainingPositiveAmounts[i] = remainingPositiveAmounts[i + 1].add(amounts[i].max(BigDecimal.ZERO));
+         remainingNegativeAmounts[i] = remainingNegativeAmounts[i + 1].add(amounts[i].min(BigDecimal.ZERO));
+      }
+   }
+   
+   /**
+    * Runs the search, passing every match found to the collector.
+    */
+   void search()
+   {
+      search(0, BigDecimal.ZERO, new long[(amounts.length + 63) >>> 6], 0);
+   }
+   
+   /**
+    * Decides on the element at the index passed, and then 
+    * moves onto the next element. 
+    * 
+    * @param index
+    *    The index of the element being decided on. 
+    * @param total
+    *    The total of the elements included so far.
+    * @param chosen
+    *    The bit mask of the indexes of the elements included so far.
+    * @param chosenCount
+    *    The number of elements included so far.
+    */
+   private void search(int index, BigDecimal total, long[] chosen, int chosenCount)
+   {
+      if (collector.isStopped())
+      {
+         return;
+      }
+      
+      // All elements decided on, record the combination if it is a match.
+      if (index == amounts.length)
+      {
+         if (chosenCount > 0 && windows.contains(total))
+         {
+            collector.addMatch(chosen);
+         }
+         collector.addExploredAtDepth(index);
+         return;
+      }
+      
+      // No total between adding every remaining negative amount and adding 
+      // every remaining positive amount is within a window, so nothing below
+      // this point can match.
+      if (!windows.intersects(
+            total.add(remainingNegativeAmounts[index]), 
+            total.add(remainingPositiveAmounts[index])))
+      {
+         collector.addExploredAtDepth(index);
+         return;
+      }
+      
+      // Once the total is greater than the highest amount to find, even after
+      // adding every remaining negative amount, there is no need to keep 
+      // adding to it. 
+      BigDecimal newTotal = total.add(amounts[index]);
+      boolean include = newTotal.add(remainingNegativeAmounts[index + 1]).compareTo(maximum) < 1;
+      long bit = 1L << index;
+      if (!include)
+      {
+         collector.addExploredAtDepth(index + 1);
+      }
+      
+      search(index + 1, total, chosen, chosenCount);
+      
+      if (include)
+      {
+         chosen[index >>> 6] |= bit;
+         search(index + 1, newTotal, chosen, chosenCount + 1);
+         chosen[index >>> 6] &= ~bit;
+      }
+   }
+}
@@ -0,0 +1,329 @@
+package bjad.processor.cboamount;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Depth first search over buckets of elements with the same amount,
+ * deciding at each depth how many elements of the bucket's amount are
+ * included rather than which ones. The totals a bucket has already
+ * been searched from without finding a match are remembered, so the
+ * same dead end reached by a different mix of amounts is not searched
+ * again.
+ *
+ * @author
+ *   Ben Dougall
+ */
+final class DuplicateAmountSearch
+{
+   /**
+    * The most dead end totals remembered across all the buckets,
+    * keeping the memory used by the search bounded.
+    */
+   static final int MAX_DEAD_ENDS = 1 << 20;
+   
+   private final BigDecimal[] bucketAmounts;
+   private final int[][] members;
+   private final long[][] binomials;
+   private final int[] counts;
+   private final TargetWindows windows;
+   private final ComboMatchCollector collector;
+   private final boolean distinct;
+   private final boolean countOnly;
+   private final BigDecimal[] remainingPositiveAmounts;
+   private final BigDecimal[] remainingNegativeAmounts;
+   private final List<Set<BigDecimal>> deadEnds;
+   private final long[] chosen;
+   private int deadEndCount = 0;
+   
+   /**
+    * Constructor, grouping the amounts into buckets.
+    *
+    * @param amounts
+    *    The amounts of the elements, sorted largest absolute amount first.
+    * @param windows
+    *    The windows of totals to find the combinations for.
+    * @param collector
+    *    The collector to pass the matches to.
+    * @param distinct
+    *    True to pass each distinct set of amounts once, false to pass
+    *    every combination of elements with those amounts.
+    * @param countOnly
+    *    True if the matches are only being counted.
+    */
+   DuplicateAmountSearch(BigDecimal[] amounts, TargetWindows windows, ComboMatchCollector collector,
+         boolean distinct, boolean countOnly)
+   {
+      this.windows = windows;
+      this.collector = collector;
+      this.distinct = distinct;
+      this.countOnly = countOnly;
+      this.chosen = new long[(amounts.length + 63) >>> 6];
+      
+      // Group the indexes by amount, keeping the buckets in the order
+      // their amounts were first seen, which is largest absolute amount
+      // first.
+      Map<BigDecimal, List<Integer>> buckets = new LinkedHashMap<>();
+      for (int i = 0; i < amounts.length; i++)
+      {
+         List<Integer> bucket = buckets.get(amounts[i].stripTrailingZeros());
+         if (bucket == null)
+         {
+            bucket = new ArrayList<>();
+            buckets.put(amounts[i].stripTrailingZeros(), bucket);
+         }
+         bucket.add(i);
+      }
+      
+      bucketAmounts = new BigDecimal[buckets.size()];
+      members = new int[buckets.size()][];
+      binomials = new long[buckets.size()][];
+      counts = new int[buckets.size()];
+      deadEnds = new ArrayList<>(buckets.size());
+      int index = 0;
+      for (List<Integer> bucket : buckets.values())
+      {
+         bucketAmounts[index] = amounts[bucket.get(0)];
+         members[index] = new int[bucket.size()];
+         for (int i = 0; i < bucket.size(); i++)
+         {
+            members[index][i] = bucket.get(i);
+         }
+         binomials[index] = countOnly && !distinct ? binomialRow(bucket.size()) : null;
+         deadEnds.add(new HashSet<>());
+         index++;
+      }
+      
+      remainingPositiveAmounts = new BigDecimal[bucketAmounts.length + 1];
+      remainingNegativeAmounts = new BigDecimal[bucketAmounts.length + 1];
+      remainingPositiveAmounts[bucketAmounts.length] = BigDecimal.ZERO;
+      remainingNegativeAmounts[bucketAmounts.length] = BigDecimal.ZERO;
+      for (int i = bucketAmounts.length - 1; i >= 0; i--)
+      {
+         BigDecimal bucketTotal = bucketAmounts[i].multiply(BigDecimal.valueOf(members[i].length));
+         remainingPositiveAmounts[i] = remainingPositiveAmounts[i + 1].add(bucketTotal.max(BigDecimal.ZERO));
+         remainingNegativeAmounts[i] = remainingNegativeAmounts[i + 1].add(bucketTotal.min(BigDecimal.ZERO));
+      }
+   }
+   
+   /**
+    * Runs the search, passing every match found to the collector.
+    */
+   void search()
+   {
+      search(0, BigDecimal.ZERO, 0, 1.0);
+   }
+   
+   /**
+    * Decides on how many elements of the bucket at the index passed
+    * are included, and then moves onto the next bucket.
+    *
+    * @param bucket
+    *    The index of the bucket being decided on.
+    * @param total
+    *    The total of the elements included so far.
+    * @param chosenCount
+    *    The number of elements included so far.
+    * @param share
+    *    The fraction of the search space below this point.
+    * @return
+    *    True if a match was found from this point on, or the search
+    *    was stopped before this point was fully searched.
+    */
+   private boolean search(int bucket, BigDecimal total, int chosenCount, double share)
+   {
+      if (collector.isStopped())
+      {
+         return true;
+      }
+      if (bucket == bucketAmounts.length)
+      {
+         collector.addExplored(share);
+         if (chosenCount > 0 && windows.contains(total))
+         {
+            addMatch();
+            return true;
+         }
+         return false;
+      }
+      if (!windows.intersects(
+            total.add(remainingNegativeAmounts[bucket]),
+            total.add(remainingPositiveAmounts[bucket])))
+      {
+         collector.addExplored(share);
+         return false;
+      }
+      
+      // The empty combination is never a match, so a path that has not
+      // included anything yet is not the same as a path whose amounts 
+      // add up to zero and is never remembered as a dead end. 
+      BigDecimal key = chosenCount == 0 ? null : total.stripTrailingZeros();
+      if (key != null && deadEnds.get(bucket).contains(key))
+      {
+         collector.addExplored(share);
+         return false;
+      }
+      
+      // Include none of the bucket first, then one more at a time until the
+      // total moves past what the remaining buckets can bring back.
+      boolean found = false;
+      BigDecimal amount = bucketAmounts[bucket];
+      BigDecimal running = total;
+      double countShare = share / (members[bucket].length + 1);
+      for (int count = 0; count <= members[bucket].length; count++)
+      {
+         if (count > 0)
+         {
+            running = running.add(amount);
+            if ((amount.signum() > 0 &&
+                 running.add(remainingNegativeAmounts[bucket + 1]).compareTo(windows.getMaximum()) > 0) ||
+                (amount.signum() < 0 &&
+                 running.add(remainingPositiveAmounts[bucket + 1]).compareTo(windows.getMinimum()) < 0))
+            {
+               collector.addExplored(countShare * (members[bucket].length + 1 - count));
+               break;
+            }
+         }
+         counts[bucket] = count;
+         found |= search(bucket + 1, running, chosenCount + count, countShare);
+      }
+      counts[bucket] = 0;
+      
+      if (!found && key != null && deadEndCount < MAX_DEAD_ENDS)
+      {
+         deadEnds.get(bucket).add(key);
+         deadEndCount++;
+      }
+      return found;
+   }
+   
+   /**
+    * Passes the match made up of the counts of each bucket to the
+    * collector, expanding it into the combinations of elements unless
+    * only distinct amounts are wanted.
+    */
+   private void addMatch()
+   {
+      if (countOnly)
+      {
+         long combinations = 1;
+         for (int bucket = 0; !distinct && bucket < counts.length; bucket++)
+         {
+            long ways = binomials[bucket][counts[bucket]];
+            combinations = combinations > Long.MAX_VALUE / ways ? Long.MAX_VALUE : combinations * ways;
+         }
+         collector.addMatchCount(combinations);
+      }
+      else if (distinct)
+      {
+         for (int bucket = 0; bucket < counts.length; bucket++)
+         {
+            for (int i = 0; i < counts[bucket]; i++)
+            {
+               setChosen(members[bucket][i]);
+            }
+         }
+         collector.addMatch(chosen);
+         for (int bucket = 0; bucket < counts.length; bucket++)
+         {
+            for (int i = 0; i < counts[bucket]; i++)
+            {
+               clearChosen(members[bucket][i]);
+            }
+         }
+      }
+      else
+      {
+         expand(0, 0, counts.length == 0 ? 0 : counts[0]);
+      }
+   }
+   
+   /**
+    * Expands the match into every combination of elements, choosing
+    * the elements of one bucket at a time.
+    *
+    * @param bucket
+    *    The index of the bucket elements are being chosen from.
+    * @param start
+    *    The position within the bucket of the first element that
+    *    can still be chosen.
+    * @param remaining
+    *    The number of elements still to choose from the bucket.
+    */
+   private void expand(int bucket, int start, int remaining)
+   {
+      if (collector.isStopped())
+      {
+         return;
+      }
+      if (bucket == counts.length)
+      {
+         collector.addMatch(chosen);
+         return;
+      }
+      if (remaining == 0)
+      {
+         expand(bucket + 1, 0, bucket + 1 < counts.length ? counts[bucket + 1] : 0);
+         return;
+      }
+      
+      for (int i = start; i <= members[bucket].length - remaining; i++)
+      {
+         setChosen(members[bucket][i]);
+         expand(bucket, i + 1, remaining - 1);
+         clearChosen(members[bucket][i]);
+      }
+   }
+   
+   /**
+    * Marks the element at the index passed as included.
+    *
+    * @param index
+    *    The index of the element.
+    */
+   private void setChosen(int index)
+   {
+      chosen[index >>> 6] |= 1L << index;
+   }
+   
+   /**
+    * Marks the element at the index passed as excluded.
+    *
+    * @param index
+    *    The index of the element.
+    */
+   private void clearChosen(int index)
+   {
+      chosen[index >>> 6] &= ~(1L << index);
+   }
+   
+   /**
+    * Works out the number of ways to choose each number of
+    * elements from a bucket.
+    *
+    * @param size
+    *    The number of elements in the bucket.
+    * @return
+    *    The number of ways to choose 0 to size elements, holding
+    *    at Long.MAX_VALUE instead of overflowing.
+    */
+   private static long[] binomialRow(int size)
+   {
+      long[] row = new long[size + 1];
+      row[0] = 1;
+      for (int n = 1; n <= size; n++)
+      {
+         for (int k = n; k > 0; k--)
+         {
+            long sum = row[k] + row[k - 1];
+            row[k] = sum < 0 ? Long.MAX_VALUE : sum;
+         }
+      }
+      return row;
+   }
+}
@@ -0,0 +1,434 @@
+package bjad.processor.cboamount;
+
+/**
+ * Dynamic programming search for scaled amounts. A reachability 
+ * table is built, as one bitset per element, marking which totals 
+ * can be made from the elements at that index onwards. Combinations 
+ * are then rebuilt from the table by only stepping into choices that
+ * can still reach a window, so no time is spent on paths that do not
+ * match. 
+ * 
+ * The table covers the totals from the sum of the negative amounts 
+ * up to the highest amount being looked for minus that sum, which are 
+ * the only totals of the remaining elements that can ever be part of
+ * a match. Without negative amounts, that is zero up to the highest 
+ * amount being looked for. Building the table takes roughly the element
+ * count multiplied by the size of that range divided by 64 steps, 
+ * regardless of how many subsets of the elements there are.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+final class DynamicProgrammingSearch
+{
+   private final long[] amounts;
+   private final long[] lows;
+   private final long[] highs;
+   private final long offset;
+   private final int span;
+   private final ComboMatchCollector collector;
+   private final long[] chosen;
+   private long[][] reachable;
+   
+   /**
+    * Constructor, setting up the search. The amounts must 
+    * be supported, see {@link #supports(ScaledAmounts, long, long)}. 
+    * 
+    * @param scaledAmounts
+    *    The amounts of the elements and the amount to find, as 
+    *    scaled long values.
+    * @param collector
+    *    The collector to pass the matches to.
+    */
+   DynamicProgrammingSearch(ScaledAmounts scaledAmounts, ComboMatchCollector collector)
+   {
+      this.amounts = scaledAmounts.amounts;
+      this.lows = scaledAmounts.lows;
+      this.highs = scaledAmounts.highs;
+      this.offset = scaledAmounts.negativeTotal;
+      this.span = (int)span(scaledAmounts);
+      this.collector = collector;
+      this.chosen = new long[(amounts.length + 63) >>> 6];
+   }
+   
+   /**
+    * Checks if the amounts can be searched with dynamic programming, 
+    * which requires the highest amount to find to be above the sum of 
+    * the negative amounts, the range of totals covered by the table
+    * to be within the limit passed, and the table to fit within both 
+    * the memory limit passed and the memory available to the heap.
+    * 
+    * @param scaledAmounts
+    *    The scaled amounts to check. 
+    * @param limit
+    *    The largest range of scaled totals that the table can be 
+    *    built for.
+    * @param memoryLimit
+    *    The most memory, in bytes, the table can use.
+    * @return
+    *    True if the search can be used.
+    */
+   static boolean supports(ScaledAmounts scaledAmounts, long limit, long memoryLimit)
+   {
+      long maximum = Math.min(limit, Integer.MAX_VALUE - 1);
+      if (scaledAmounts == null || 
+          scaledAmounts.negativeTotal < -maximum || 
+          scaledAmounts.getMaximum() > maximum || 
+          scaledAmounts.getMaximum() <= scaledAmounts.negativeTotal || 
+          span(scaledAmounts) > maximum)
+      {
+         return false;
+      }
+      long required = requiredMemory(scaledAmounts.amounts.length, span(scaledAmounts));
+      Runtime runtime = Runtime.getRuntime();
+      long available = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+      return required <= memoryLimit && required <= available;
+   }
+   
+   /**
+    * Provides the bytes of memory the reachability table needs, 
+    * one row of words for each element plus the row past the last 
+    * element.
+    * 
+    * @param count
+    *    The number of elements being searched.
+    * @param span
+    *    The range of totals the table covers.
+    * @return
+    *    The bytes of memory needed.
+    */
+   static long requiredMemory(int count, long span)
+   {
+      return Long.BYTES * (count + 1L) * ((span >>> 6) + 1);
+   }
+   
+   /**
+    * Works out the size of the range of totals the table covers.
+    * 
+    * @param scaledAmounts
+    *    The scaled amounts to work out the range for. 
+    * @return
+    *    The highest amount to find minus twice the sum of the 
+    *    negative amounts.
+    */
+   private static long span(ScaledAmounts scaledAmounts)
+   {
+      return scaledAmounts.getMaximum() - 2 * scaledAmounts.negativeTotal;
+   }
+   
+   /**
+    * Estimates the number of steps needed to build the 
+    * reachability table.
+    * 
+    * @param scaledAmounts
+    *    The scaled amounts to estimate for. 
+    * @return
+    *    The estimated number of steps.
+    */
+   static double estimateCost(ScaledAmounts scaledAmounts)
+   {
+      return (scaledAmounts.amounts.length + 1.0) * ((span(scaledAmounts) >>> 6) + 1.0);
+   }
+   
+   /**
+    * Runs the search, passing every match found to the collector.
+    */
+   void search()
+   {
+      buildTable();
+      if (canReachWindow(0, 0))
+      {
+         rebuild(0, 0, 0);
+      }
+      else
+      {
+         collector.addExploredAtDepth(0);
+      }
+   }
+   
+   /**
+    * Counts the combinations adding up to a total within any of 
+    * the windows without creating them. 
+    * 
+    * @return
+    *    The number of combinations, or Long.MAX_VALUE if there are
+    *    more combinations than a long can hold.
+    */
+   long count()
+   {
+      // ways[total - offset] holds the number of subsets of the elements seen
+      // so far adding up to the total. Going through the totals away from 
+      // the direction the amount moves them means each element is only 
+      // counted once per subset.
+      long[] ways = new long[span + 1];
+      ways[(int)-offset] = 1;
+      for (long amount : amounts)
+      {
+         int shift = (int)amount;
+         if (shift > 0)
+         {
+            for (int total = span; total >= shift; total--)
+            {
+               ways[total] = addCounts(ways[total], ways[total - shift]);
+            }
+         }
+         else
+         {
+            for (int total = 0; total <= span + shift; total++)
+            {
+               ways[total] = addCounts(ways[total], ways[total - shift]);
+            }
+         }
+      }
+      
+      long count = 0;
+      for (int window = 0; window < lows.length; window++)
+      {
+         long first = Math.max(lows[window], offset);
+         long last = Math.min(highs[window], offset + span);
+         for (long total = first; total <= last; total++)
+         {
+            count = addCounts(count, ways[(int)(total - offset)]);
+         }
+         
+         // The empty combination, with a total of 0, is never counted.
+         if (first <= 0 && last >= 0)
+         {
+            count = count == Long.MAX_VALUE ? count : count - 1;
+         }
+      }
+      return count;
+   }
+   
+   /**
+    * Adds two counts together, holding at Long.MAX_VALUE instead 
+    * of overflowing.
+    * 
+    * @param first
+    *    The first count.
+    * @param second
+    *    The second count.
+    * @return
+    *    The sum of the counts, or Long.MAX_VALUE if it does not 
+    *    fit in a long. 
+    */
+   private static long addCounts(long first, long second)
+   {
+      long sum = first + second;
+      return sum < 0 ? Long.MAX_VALUE : sum;
+   }
+   
+   /**
+    * Builds the reachability table, where the bits set in row i 
+    * are the totals, within the range the table covers, that can be 
+    * made from the elements at index i onwards. Bit 0 is the sum of 
+    * the negative amounts. Each row is the row below it combined with 
+    * the same row shifted by the element's amount, up for positive 
+    * amounts and down for negative amounts.
+    */
+   private void buildTable()
+   {
+      int words = (span >>> 6) + 1;
+      long lastWordMask = -1L >>> (63 - (span & 63));
+      int zero = (int)-offset;
+      reachable = new long[amounts.length + 1][words];
+      reachable[amounts.length][zero >>> 6] = 1L << zero;
+      
+      for (int index = amounts.length - 1; index >= 0; index--)
+      {
+         long[] below = reachable[index + 1];
+         long[] row = reachable[index];
+         int shift = (int)Math.abs(amounts[index]);
+         int wordShift = shift >>> 6;
+         int bitShift = shift & 63;
+         
+         System.arraycopy(below, 0, row, 0, words);
+         if (amounts[index] > 0)
+         {
+            for (int word = words - 1; word >= wordShift; word--)
+            {
+               long shifted = below[word - wordShift] << bitShift;
+               if (bitShift != 0 && word - wordShift > 0)
+               {
+                  shifted |= below[word - wordShift - 1] >>> (64 - bitShift);
+               }
+               row[word] |= shifted;
+            }
+         }
+         else
+         {
+            for (int word = 0; word < words - wordShift; word++)
+            {
+               long shifted = below[word + wordShift] >>> bitShift;
+               if (bitShift != 0 && word + wordShift + 1 < words)
+               {
+                  shifted |= below[word + wordShift + 1] << (64 - bitShift);
+               }
+               row[word] |= shifted;
+            }
+         }
+         row[words - 1] &= lastWordMask;
+      }
+   }
+   
+   /**
+    * Checks the table to see if any total within the range passed, 
+    * inclusive, can be made from the elements at the index passed 
+    * onwards.
+    * 
+    * @param index
+    *    The index of the first element that can be used.
+    * @param from
+    *    The lowest total of the range. 
+    * @param to
+    *    The highest total of the range. 
+    * @return
+    *    True if a total within the range can be made.
+    */
+   private boolean isAnyReachable(int index, long from, long to)
+   {
+      long firstBit = Math.max(0, from - offset);
+      long lastBit = Math.min(span, to - offset);
+      if (firstBit > lastBit)
+      {
+         return false;
+      }
+      
+      int first = (int)firstBit;
+      int last = (int)lastBit;
+      
+      long[] row = reachable[index];
+      int firstWord = first >>> 6;
+      int lastWord = last >>> 6;
+      long firstMask = -1L << (first & 63);
+      long lastMask = -1L >>> (63 - (last & 63));
+      if (firstWord == lastWord)
+      {
+         return (row[firstWord] & firstMask & lastMask) != 0;
+      }
+      if ((row[firstWord] & firstMask) != 0)
+      {
+         return true;
+      }
+      for (int word = firstWord + 1; word < lastWord; word++)
+      {
+         if (row[word] != 0)
+         {
+            return true;
+         }
+      }
+      return (row[lastWord] & lastMask) != 0;
+   }
+   
+   /**
+    * Checks the table to see if a total within any window can still 
+    * be made, given the total of the elements already included.
+    * 
+    * @param index
+    *    The index of the first element that can still be used.
+    * @param total
+    *    The total of the elements already included.
+    * @return
+    *    True if a window can still be reached.
+    */
+   private boolean canReachWindow(int index, long total)
+   {
+      for (int window = 0; window < lows.length; window++)
+      {
+         if (isAnyReachable(index, lows[window] - total, highs[window] - total))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+   
+   /**
+    * Rebuilds the combinations from the table, excluding the element 
+    * before including it so combinations are found in the same order
+    * as the backtracking search.
+    * 
+    * @param index
+    *    The index of the element being decided on. 
+    * @param total
+    *    The total of the elements included so far.
+    * @param chosenCount
+    *    The number of elements included so far.
+    */
+   private void rebuild(int index, long total, int chosenCount)
+   {
+      if (collector.isStopped())
+      {
+         return;
+      }
+      if (index == amounts.length)
+      {
+         // The only combination that can reach here without being within
+         // a window is the empty combination, which is never a match.
+         if (chosenCount > 0)
+         {
+            collector.addMatch(chosen);
+         }
+         collector.addExploredAtDepth(index);
+         return;
+      }
+      
+      if (canReachWindow(index + 1, total))
+      {
+         rebuild(index + 1, total, chosenCount);
+      }
+      else
+      {
+         collector.addExploredAtDepth(index + 1);
+      }
+      
+      long newTotal = total + amounts[index];
+      if (canReachWindow(index + 1, newTotal))
+      {
+         chosen[index >>> 6] |= 1L << index;
+         rebuild(index + 1, newTotal, chosenCount + 1);
+         chosen[index >>> 6] &= ~(1L << index);
+      }
+      else
+      {
+         collector.addExploredAtDepth(index + 1);
+      }
+   }
+   
+   /**
+    * Solver running the dynamic programming search, counting the matches
+    * from the table when only the count is wanted.
+    *
+    * @author 
+    *   Ben Dougall
+    */
+   static final class Solver implements ComboSolver
+   {
+      @Override
+      public boolean supports(ComboSearchContext context)
+      {
+         return DynamicProgrammingSearch.supports(context.getScaledAmounts(), 
+               context.getDynamicProgrammingLimit(), context.getDynamicProgrammingMemoryLimit());
+      }
+      
+      @Override
+      public double estimateCost(ComboSearchContext context)
+      {
+         return DynamicProgrammingSearch.estimateCost(context.getScaledAmounts());
+      }
+      
+      @Override
+      public void solve(ComboSearchContext context)
+      {
+         DynamicProgrammingSearch search = new DynamicProgrammingSearch(context.getScaledAmounts(), context.getCollector());
+         if (context.isCountOnly())
+         {
+            context.addMatchCount(search.count());
+         }
+         else
+         {
+            search.search();
+         }
+      }
+   }
+}
@@ -0,0 +1,106 @@
+package bjad.processor.cboamount;
+
+import java.math.BigDecimal;
+
+/**
+ * Search through every subset of the elements without any pruning,
+ * in the same order as the backtracking search. Far slower than the 
+ * other searches, but simple enough to check their results against.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+final class ExhaustiveSearch
+{
+   private final BigDecimal[] amounts;
+   private final TargetWindows windows;
+   private final ComboMatchCollector collector;
+   private final long[] chosen;
+   
+   /**
+    * Constructor, setting up the search. 
+    * 
+    * @param amounts
+    *    The amounts of the elements.
+    * @param windows
+    *    The windows of totals to find the combinations for.
+    * @param collector
+    *    The collector to pass the matches to.
+    */
+   ExhaustiveSearch(BigDecimal[] amounts, TargetWindows windows, ComboMatchCollector collector)
+   {
+      this.amounts = amounts;
+      this.windows = windows;
+      this.collector = collector;
+      this.chosen = new long[(amounts.length + 63) >>> 6];
+   }
+   
+   /**
+    * Runs the search, passing every match found to the collector.
+    */
+   void search()
+   {
+      search(0, BigDecimal.ZERO, 0);
+   }
+   
+   /**
+    * Excludes and then includes the element at the index passed, 
+    * moving onto the next element each time. 
+    * 
+    * @param index
+    *    The index of the element being decided on. 
+    * @param total
+    *    The total of the elements included so far.
+    * @param chosenCount
+    *    The number of elements included so far.
+    */
+   private void search(int index, BigDecimal total, int chosenCount)
+   {
+      if (collector.isStopped())
+      {
+         return;
+      }
+      if (index == amounts.length)
+      {
+         if (chosenCount > 0 && windows.contains(total))
+         {
+            collector.addMatch(chosen);
+         }
+         collector.addExploredAtDepth(index);
+         return;
+      }
+      
+      search(index + 1, total, chosenCount);
+      chosen[index >>> 6] |= 1L << index;
+      search(index + 1, total.add(amounts[index]), chosenCount + 1);
+      chosen[index >>> 6] &= ~(1L << index);
+   }
+   
+   /**
+    * Solver running the exhaustive search, which looks at every subset
+    * of the elements and the total of each.
+    *
+    * @author 
+    *   Ben Dougall
+    */
+   static final class Solver implements ComboSolver
+   {
+      @Override
+      public boolean supports(ComboSearchContext context)
+      {
+         return true;
+      }
+      
+      @Override
+      public double estimateCost(ComboSearchContext context)
+      {
+         return Math.pow(2, context.getElementCount()) * (context.getElementCount() + 1);
+      }
+      
+      @Override
+      public void solve(ComboSearchContext context)
+      {
+         new ExhaustiveSearch(context.getAmounts(), context.getWindows(), context.getCollector()).search();
+      }
+   }
+}
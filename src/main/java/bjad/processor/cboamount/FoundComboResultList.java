@@ -1,5 +1,6 @@
 package bjad.processor.cboamount;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,10 +15,51 @@ public class FoundComboResultList
 {
    /**
     * The list of elements that were found to match the amount 
-    * being looked for. 
+    * being looked for. For results created by the combination finder, 
+    * the list is only built on the first call to getComboElements(), 
+    * so subclasses should read the elements through that method.
     */
    protected List<ComboFinderElement> comboElements = new ArrayList<>();
    
+   /**
+    * The elements the combination finder searched through. 
+    */
+   private List<ComboFinderElement> searchedElements;
+   
+   /**
+    * The bit mask of the indexes, within the searched elements, 
+    * of the elements in the combination. 
+    */
+   final long[] mask;
+   
+   private BigDecimal comboTotal;
+   private BigDecimal targetAmount;
+   
+   /**
+    * Default constructor, creating an empty result.
+    */
+   public FoundComboResultList()
+   {
+      this.mask = null;
+   }
+   
+   /**
+    * Constructor for the combination finder, creating the result
+    * from the bit mask of the elements in the combination. The list
+    * of elements is only created when it is asked for.
+    * 
+    * @param searchedElements
+    *    The elements the combination finder searched through. 
+    * @param mask
+    *    The bit mask of the indexes of the elements in the combination.
+    */
+   FoundComboResultList(List<ComboFinderElement> searchedElements, long[] mask)
+   {
+      this.comboElements = null;
+      this.searchedElements = searchedElements;
+      this.mask = mask;
+   }
+   
    /**
     * Gets the list of elements, initializing the list if needed. 
     * @return
@@ -27,8 +69,93 @@ public class FoundComboResultList
    {
       if (comboElements == null)
       {
-         comboElements = new ArrayList<>();
+         comboElements = new ArrayList<>(searchedElements == null ? 0 : getComboSize());
+         if (searchedElements != null)
+         {
+            for (int word = 0; word < mask.length; word++)
+            {
+               for (long bits = mask[word]; bits != 0; bits &= bits - 1)
+               {
+                  comboElements.add(searchedElements.get((word << 6) + Long.numberOfTrailingZeros(bits)));
+               }
+            }
+            searchedElements = null;
+         }
       }
       return comboElements;
    }
+   
+   /**
+    * Provides the total of the amounts of the elements in the combination.
+    * 
+    * @return
+    *    The total of the combination, or null if the result was not
+    *    created by the combination finder.
+    */
+   public BigDecimal getComboTotal()
+   {
+      return comboTotal;
+   }
+   
+   /**
+    * Provides the amount being looked for that the combination's 
+    * total is closest to.
+    * 
+    * @return
+    *    The amount the combination matched, or null if the result 
+    *    was not created by the combination finder.
+    */
+   public BigDecimal getTargetAmount()
+   {
+      return targetAmount;
+   }
+   
+   /**
+    * Provides how far the combination's total is from the amount
+    * it matched, which is zero for exact matches.
+    * 
+    * @return
+    *    The total minus the amount matched, or null if the result 
+    *    was not created by the combination finder.
+    */
+   public BigDecimal getDifference()
+   {
+      return comboTotal == null || targetAmount == null ? null : comboTotal.subtract(targetAmount);
+   }
+   
+   /**
+    * Sets the total of the combination and the amount it matched.
+    * 
+    * @param comboTotal
+    *    The total of the combination.
+    * @param targetAmount
+    *    The amount being looked for that the total is closest to.
+    */
+   void setMatch(BigDecimal comboTotal, BigDecimal targetAmount)
+   {
+      this.comboTotal = comboTotal;
+      this.targetAmount = targetAmount;
+   }
+   
+   /**
+    * Provides the number of elements in the combination without 
+    * creating the list of elements.
+    * 
+    * @return
+    *    The number of elements in the combination.
+    */
+   public int getComboSize()
+   {
+      if (comboElements != null || mask == null)
+      {
+         return getComboElements().size();
+      }
+      
+      int size = 0;
+      for (long bits : mask)
+      {
+         size += Long.bitCount(bits);
+      }
+      return size;
+   }
 }
@@ -0,0 +1,288 @@
+package bjad.processor.cboamount;
+
+/**
+ * Meet in the middle search, which splits the elements into two
+ * halves, works out the sorted subset totals of each half, and then
+ * walks the two sorted lists towards each other to find every pair
+ * of subsets whose totals add up to a total within one of the windows
+ * being looked for.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+final class MeetInTheMiddleSearch
+{
+   /** 
+    * The largest number of elements the search supports, keeping the
+    * subsets of each half within an int bit mask and an array. Each 
+    * half holds every one of its subset totals, so the memory needed
+    * doubles with every two elements added, about 200 MB at 44 elements
+    * and 1.2 GB at 50, and is checked before each search is run.
+    */
+   static final int MAX_ELEMENTS = 60;
+   
+   /**
+    * The bytes of memory needed for each subset of a half, for its 
+    * long total and its int bit mask.
+    */
+   private static final long SUBSET_BYTES = 12;
+   
+   /**
+    * The cost of each subset total of a half relative to a step of
+    * the backtracking search, covering the memory for the totals and
+    * sorting the matches back into the backtracking search's order. 
+    */
+   private static final int SUBSET_COST = 64;
+   
+   private final ScaledAmounts scaledAmounts;
+   private final ComboMatchCollector collector;
+   private final int leftCount;
+   private final long[] chosen = new long[1];
+   
+   /**
+    * Constructor, setting up the search. 
+    * 
+    * @param scaledAmounts
+    *    The amounts of the elements and the amount to find, as 
+    *    scaled long values.
+    * @param collector
+    *    The collector to pass the matches to.
+    */
+   MeetInTheMiddleSearch(ScaledAmounts scaledAmounts, ComboMatchCollector collector)
+   {
+      if (scaledAmounts.amounts.length > MAX_ELEMENTS)
+      {
+         throw new IllegalStateException(
+               "Meet in the middle search supports at most " + MAX_ELEMENTS + 
+               " elements, " + scaledAmounts.amounts.length + " were provided.");
+      }
+      long required = requiredMemory(scaledAmounts.amounts.length);
+      Runtime runtime = Runtime.getRuntime();
+      long available = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+      if (required > available)
+      {
+         throw new IllegalStateException(
+               "Meet in the middle search over " + scaledAmounts.amounts.length + " elements needs " + 
+               required + " bytes of memory, only " + available + " bytes are available.");
+      }
+      this.scaledAmounts = scaledAmounts;
+      this.collector = collector;
+      this.leftCount = scaledAmounts.amounts.length / 2;
+   }
+   
+   /**
+    * Provides the bytes of memory the search needs for the subset 
+    * totals of both halves of the elements.
+    * 
+    * @param count
+    *    The number of elements being searched.
+    * @return
+    *    The bytes of memory needed.
+    */
+   static long requiredMemory(int count)
+   {
+      int leftCount = count / 2;
+      // The right half is built in two buffers, one of which is first 
+      // used to build the left half in its own buffer.
+      return SUBSET_BYTES * ((1L << leftCount) + 2 * (1L << (count - leftCount)));
+   }
+   
+   /**
+    * Runs the search, passing every match found to the collector.
+    */
+   void search()
+   {
+      long[] amounts = scaledAmounts.amounts;
+      int rightCount = amounts.length - leftCount;
+      long[] spareTotals = new long[1 << rightCount];
+      int[] spareMasks = new int[1 << rightCount];
+      SubsetTotals left = new SubsetTotals(amounts, 0, leftCount, 
+            new long[1 << leftCount], new int[1 << leftCount], spareTotals, spareMasks);
+      SubsetTotals right = new SubsetTotals(amounts, leftCount, rightCount, 
+            spareTotals, spareMasks, new long[1 << rightCount], new int[1 << rightCount]);
+      
+      // Each left total, within each window, is an equal share of the 
+      // search space for the progress reported.
+      double leftShare = 1.0 / scaledAmounts.lows.length / left.size;
+      
+      // For each window, walk the left totals up from the smallest. The 
+      // range of right totals that land the pair within the window only 
+      // moves down as the left total goes up, so the start and end of 
+      // the range are walked down from the largest right total.
+      for (int window = 0; window < scaledAmounts.lows.length; window++)
+      {
+         long low = scaledAmounts.lows[window];
+         long high = scaledAmounts.highs[window];
+         int rangeStart = right.size;
+         int rangeEnd = right.size - 1;
+         int l = 0;
+         for (; l < left.size && rangeEnd >= 0; l++)
+         {
+            if (collector.isStopped())
+            {
+               return;
+            }
+            long leftTotal = left.totals[l];
+            while (rangeEnd >= 0 && right.totals[rangeEnd] > high - leftTotal)
+            {
+               rangeEnd--;
+            }
+            while (rangeStart > 0 && right.totals[rangeStart - 1] >= low - leftTotal)
+            {
+               rangeStart--;
+            }
+            for (int r = rangeStart; r <= rangeEnd; r++)
+            {
+               if (collector.isStopped())
+               {
+                  return;
+               }
+               addMatch(left.masks[l], right.masks[r]);
+            }
+            collector.addExplored(leftShare);
+         }
+         collector.addExplored(leftShare * (left.size - l));
+      }
+   }
+   
+   /**
+    * Combines the left and right subset masks into the mask of 
+    * the element indexes and passes it to the collector.
+    * 
+    * @param leftMask
+    *    The subset of the left half of the elements.
+    * @param rightMask
+    *    The subset of the right half of the elements.
+    */
+   private void addMatch(int leftMask, int rightMask)
+   {
+      // The empty combination is never a match.
+      if (leftMask == 0 && rightMask == 0)
+      {
+         return;
+      }
+      
+      chosen[0] = (leftMask & 0xFFFFFFFFL) | ((rightMask & 0xFFFFFFFFL) << leftCount);
+      collector.addMatch(chosen);
+   }
+   
+   /**
+    * Every subset total of a range of the elements, sorted from 
+    * smallest to largest, along with the bit mask of the elements
+    * within the range making up each total.
+    *
+    * @author 
+    *   Ben Dougall
+    */
+   private static final class SubsetTotals
+   {
+      private long[] totals;
+      private int[] masks;
+      private int size;
+      
+      /**
+       * Works out the sorted subset totals by starting with the empty 
+       * subset and, for each element, merging the sorted totals so far 
+       * with the same totals plus the element's amount. Both lists are 
+       * already sorted, so no sorting is ever needed. The merges go 
+       * back and forth between the result buffers and the spare 
+       * buffers, starting in whichever ends with the totals in the 
+       * result buffers, so the spare buffers can be used again once
+       * the totals are worked out.
+       * 
+       * @param amounts
+       *    The scaled amounts of all the elements.
+       * @param offset
+       *    The index of the first element in the range.
+       * @param count
+       *    The number of elements in the range.
+       * @param resultTotals
+       *    The buffer to hold the totals, with room for every subset.
+       * @param resultMasks
+       *    The buffer to hold the masks, with room for every subset.
+       * @param spareTotals
+       *    The spare buffer for the totals while merging, with room 
+       *    for every subset.
+       * @param spareMasks
+       *    The spare buffer for the masks while merging, with room 
+       *    for every subset.
+       */
+      private SubsetTotals(long[] amounts, int offset, int count, 
+            long[] resultTotals, int[] resultMasks, long[] spareTotals, int[] spareMasks)
+      {
+         boolean even = count % 2 == 0;
+         totals = even ? resultTotals : spareTotals;
+         masks = even ? resultMasks : spareMasks;
+         long[] mergedTotals = even ? spareTotals : resultTotals;
+         int[] mergedMasks = even ? spareMasks : resultMasks;
+         totals[0] = 0;
+         masks[0] = 0;
+         size = 1;
+         
+         for (int bit = 0; bit < count; bit++)
+         {
+            long amount = amounts[offset + bit];
+            int withoutIndex = 0;
+            int withIndex = 0;
+            int merged = 0;
+            while (withoutIndex < size || withIndex < size)
+            {
+               if (withIndex == size || 
+                   (withoutIndex < size && totals[withoutIndex] <= totals[withIndex] + amount))
+               {
+                  mergedTotals[merged] = totals[withoutIndex];
+                  mergedMasks[merged++] = masks[withoutIndex++];
+               }
+               else
+               {
+                  mergedTotals[merged] = totals[withIndex] + amount;
+                  mergedMasks[merged++] = masks[withIndex++] | (1 << bit);
+               }
+            }
+            
+            long[] swapTotals = totals;
+            totals = mergedTotals;
+            mergedTotals = swapTotals;
+            int[] swapMasks = masks;
+            masks = mergedMasks;
+            mergedMasks = swapMasks;
+            size = merged;
+         }
+      }
+   }
+   
+   /**
+    * Solver running the meet in the middle search, estimated as the 
+    * subsets of the larger half multiplied by the element count and 
+    * the cost of each subset. Only supports searches whose subset 
+    * totals fit within the finder's meet in the middle memory limit.
+    * The matches are found out of the backtracking search's order.
+    *
+    * @author 
+    *   Ben Dougall
+    */
+   static final class Solver implements ComboSolver
+   {
+      @Override
+      public boolean supports(ComboSearchContext context)
+      {
+         return context.getElementCount() <= MAX_ELEMENTS 
+               && requiredMemory(context.getElementCount()) <= context.getMeetInTheMiddleMemoryLimit()
+               && context.getScaledAmounts() != null;
+      }
+      
+      @Override
+      public double estimateCost(ComboSearchContext context)
+      {
+         int count = context.getElementCount();
+         return Math.pow(2, (count + 1) / 2) * count * SUBSET_COST;
+      }
+      
+      @Override
+      public void solve(ComboSearchContext context)
+      {
+         context.setOutOfOrder();
+         new MeetInTheMiddleSearch(context.getScaledAmounts(), context.getCollector()).search();
+      }
+   }
+}
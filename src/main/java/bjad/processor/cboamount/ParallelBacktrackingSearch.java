@@ -0,0 +1,159 @@
+package bjad.processor.cboamount;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Backtracking search that runs on a fork join pool. While a thread
+ * walks down the search tree, whenever its queue of waiting work runs 
+ * low it hands the branch including the current element off as a new
+ * task, and carries on with the branch excluding it. Idle threads steal
+ * those tasks, so branches that prune unevenly still keep every thread
+ * busy.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+final class ParallelBacktrackingSearch extends BacktrackingSearch
+{
+   /** 
+    * Branches with fewer elements left to decide on than this are
+    * always searched by the current thread, as they finish faster 
+    * than handing them off. 
+    */
+   private static final int MIN_SPLIT_ELEMENTS = 16;
+   
+   /**
+    * The number of waiting tasks a thread can have before it stops 
+    * handing off more branches.
+    */
+   private static final int MAX_SURPLUS_TASKS = 2;
+   
+   private final ForkJoinPool pool;
+   private final Queue<SearchTask> forkedTasks = new ConcurrentLinkedQueue<>();
+   
+   /**
+    * Constructor, setting up the search. 
+    * 
+    * @param scaledAmounts
+    *    The amounts of the elements, sorted largest absolute amount first,
+    *    and the windows of totals to find, as scaled long values.
+    * @param collector
+    *    The collector to pass the matches to. 
+    * @param pool
+    *    The pool to run the search on. 
+    */
+   ParallelBacktrackingSearch(ScaledAmounts scaledAmounts, ComboMatchCollector collector, ForkJoinPool pool)
+   {
+      super(scaledAmounts, collector);
+      this.pool = pool;
+      collector.setOutOfOrder();
+   }
+   
+   /**
+    * Runs the search on the pool, returning once every branch 
+    * has been searched.
+    */
+   @Override
+   void search()
+   {
+      pool.invoke(new RecursiveAction()
+      {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected void compute()
+         {
+            search(0, 0, new long[(amounts.length + 63) >>> 6], 0);
+            
+            // Every task adds the tasks it forks before it completes, so once
+            // the queue is empty after joining, every branch has been searched.
+            SearchTask task;
+            while ((task = forkedTasks.poll()) != null)
+            {
+               task.join();
+            }
+         }
+      });
+   }
+   
+   @Override
+   protected boolean splitInclude(int index, long total, long[] chosen, int chosenCount)
+   {
+      if (amounts.length - index < MIN_SPLIT_ELEMENTS || 
+          ForkJoinTask.getSurplusQueuedTaskCount() > MAX_SURPLUS_TASKS)
+      {
+         return false;
+      }
+      
+      SearchTask task = new SearchTask(index, total, chosen.clone(), chosenCount);
+      forkedTasks.add(task);
+      task.fork();
+      return true;
+   }
+   
+   /**
+    * Task searching a branch that was handed off. 
+    *
+    * @author 
+    *   Ben Dougall
+    */
+   private final class SearchTask extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L;
+      
+      private final int index;
+      private final long total;
+      private final long[] chosen;
+      private final int chosenCount;
+      
+      private SearchTask(int index, long total, long[] chosen, int chosenCount)
+      {
+         this.index = index;
+         this.total = total;
+         this.chosen = chosen;
+         this.chosenCount = chosenCount;
+      }
+
+      @Override
+      protected void compute()
+      {
+         search(index, total, chosen, chosenCount);
+      }
+   }
+   
+   /**
+    * Solver running the backtracking search across the threads of the 
+    * fork join pool, estimated as the backtracking cost shared across 
+    * the pool's threads. Only supports amounts that can be scaled to 
+    * long values, falling back to the BigDecimal backtracking search 
+    * otherwise.
+    *
+    * @author 
+    *   Ben Dougall
+    */
+   static final class Solver implements ComboSolver
+   {
+      @Override
+      public boolean supports(ComboSearchContext context)
+      {
+         return context.getScaledAmounts() != null;
+      }
+      
+      @Override
+      public double estimateCost(ComboSearchContext context)
+      {
+         return Math.pow(2, context.getElementCount()) / context.getForkJoinPool().getParallelism();
+      }
+      
+      @Override
+      public void solve(ComboSearchContext context)
+      {
+         new ParallelBacktrackingSearch(
+               context.getScaledAmounts(), context.getCollector(), context.getForkJoinPool()).search();
+      }
+   }
+}
@@ -0,0 +1,179 @@
+package bjad.processor.cboamount;
+
+import java.math.BigDecimal;
+
+/**
+ * The element amounts and the windows of totals to find converted 
+ * to long values sharing a common scale, so that the amounts can be 
+ * added and compared without BigDecimal. For example, amounts with 
+ * two decimal places are stored as cents. 
+ *
+ * @author 
+ *   Ben Dougall
+ */
+final class ScaledAmounts
+{
+   /** The element amounts, multiplied by 10 to the power of the scale. */
+   final long[] amounts;
+   /** The lowest total of each window, multiplied by 10 to the power of the scale. */
+   final long[] lows;
+   /** The highest total of each window, multiplied by 10 to the power of the scale. */
+   final long[] highs;
+   /** The sum of the negative element amounts, zero if there are none. */
+   final long negativeTotal;
+   /** The number of decimal places the values were scaled by. */
+   final int scale;
+   
+   private ScaledAmounts(long[] amounts, long[] lows, long[] highs, long negativeTotal, int scale)
+   {
+      this.amounts = amounts;
+      this.lows = lows;
+      this.highs = highs;
+      this.negativeTotal = negativeTotal;
+      this.scale = scale;
+   }
+   
+   /**
+    * Provides the lowest total that can match any window. 
+    * 
+    * @return
+    *    The lowest scaled total of the first window.
+    */
+   long getMinimum()
+   {
+      return lows[0];
+   }
+   
+   /**
+    * Provides the highest total that can match any window. 
+    * 
+    * @return
+    *    The highest scaled total of the last window.
+    */
+   long getMaximum()
+   {
+      return highs[highs.length - 1];
+   }
+   
+   /**
+    * Checks if the scaled total passed is within any window.
+    * 
+    * @param total
+    *    The scaled total to check.
+    * @return
+    *    True if the total is within a window.
+    */
+   boolean contains(long total)
+   {
+      return intersects(total, total);
+   }
+   
+   /**
+    * Checks if any window overlaps the range of scaled totals 
+    * passed, inclusive.
+    * 
+    * @param from
+    *    The lowest total of the range.
+    * @param to
+    *    The highest total of the range.
+    * @return
+    *    True if a total within the range is within a window.
+    */
+   boolean intersects(long from, long to)
+   {
+      if (highs.length == 1)
+      {
+         return from <= highs[0] && to >= lows[0];
+      }
+      
+      // Find the first window that ends at or after the start of the range,
+      // which is the only window that can overlap the range if the next 
+      // window starts after the end of it.
+      int first = 0;
+      int last = highs.length;
+      while (first < last)
+      {
+         int middle = (first + last) >>> 1;
+         if (highs[middle] < from)
+         {
+            first = middle + 1;
+         }
+         else
+         {
+            last = middle;
+         }
+      }
+      return first < highs.length && lows[first] <= to;
+   }
+   
+   /**
+    * Converts the amounts passed to scaled long values. 
+    * 
+    * @param amounts
+    *    The element amounts to convert.
+    * @param windows
+    *    The windows of totals being looked for.
+    * @return
+    *    The scaled amounts, or null if any amount or window, or the 
+    *    sum of all the amounts, would not fit in a long once scaled.
+    */
+   static ScaledAmounts of(BigDecimal[] amounts, TargetWindows windows)
+   {
+      int scale = 0;
+      for (BigDecimal amount : amounts)
+      {
+         scale = Math.max(scale, amount.scale());
+      }
+      for (int i = 0; i < windows.size(); i++)
+      {
+         scale = Math.max(scale, Math.max(windows.getLow(i).scale(), windows.getHigh(i).scale()));
+      }
+      
+      try
+      {
+         long[] scaled = new long[amounts.length];
+         long absoluteTotal = 0;
+         long negativeTotal = 0;
+         for (int i = 0; i < amounts.length; i++)
+         {
+            scaled[i] = toScaledLong(amounts[i], scale);
+            absoluteTotal = Math.addExact(absoluteTotal, scaled[i] < 0 ? Math.negateExact(scaled[i]) : scaled[i]);
+            negativeTotal += Math.min(scaled[i], 0);
+         }
+         
+         // Make sure any total within the search, including the difference to 
+         // any window, can be worked out without overflowing.
+         long[] lows = new long[windows.size()];
+         long[] highs = new long[windows.size()];
+         for (int i = 0; i < lows.length; i++)
+         {
+            lows[i] = toScaledLong(windows.getLow(i), scale);
+            highs[i] = toScaledLong(windows.getHigh(i), scale);
+            Math.addExact(absoluteTotal, lows[i] < 0 ? Math.negateExact(lows[i]) : lows[i]);
+            Math.addExact(absoluteTotal, highs[i] < 0 ? Math.negateExact(highs[i]) : highs[i]);
+         }
+         return new ScaledAmounts(scaled, lows, highs, negativeTotal, scale);
+      }
+      catch (ArithmeticException ex)
+      {
+         return null;
+      }
+   }
+   
+   /**
+    * Converts the amount to a long value at the scale passed.
+    * 
+    * @param amount
+    *    The amount to convert.
+    * @param scale
+    *    The number of decimal places to scale by.
+    * @return
+    *    The scaled amount.
+    * @throws ArithmeticException
+    *    If the scaled amount does not fit in a long.
+    */
+   private static long toScaledLong(BigDecimal amount, int scale)
+   {
+      return amount.setScale(scale).unscaledValue().longValueExact();
+   }
+}
@@ -0,0 +1,202 @@
+package bjad.processor.cboamount;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The ranges of totals that count as a match for the amounts being 
+ * looked for. Each amount to find, plus or minus the tolerance, is a 
+ * window, and overlapping windows are merged so that the windows are
+ * sorted and never overlap. Any total can therefore match at most one
+ * window, so a search over all the windows at once never reports the
+ * same combination twice.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+final class TargetWindows
+{
+   private final BigDecimal[] targets;
+   private final BigDecimal[] lows;
+   private final BigDecimal[] highs;
+   private final boolean exact;
+   
+   /**
+    * Creates the windows for the amounts to find.
+    * 
+    * @param amountsToFind
+    *    The amounts being looked for. 
+    * @param tolerance
+    *    How far, above or below, a total can be from an amount
+    *    being looked for and still count as a match.
+    */
+   TargetWindows(Collection<BigDecimal> amountsToFind, BigDecimal tolerance)
+   {
+      TreeSet<BigDecimal> sorted = new TreeSet<>(amountsToFind);
+      targets = sorted.toArray(new BigDecimal[sorted.size()]);
+      exact = targets.length == 1 && tolerance.signum() == 0;
+      
+      List<BigDecimal> mergedLows = new ArrayList<>();
+      List<BigDecimal> mergedHighs = new ArrayList<>();
+      for (BigDecimal target : targets)
+      {
+         BigDecimal low = target.subtract(tolerance);
+         BigDecimal high = target.add(tolerance);
+         int last = mergedHighs.size() - 1;
+         if (last >= 0 && low.compareTo(mergedHighs.get(last)) <= 0)
+         {
+            mergedHighs.set(last, high);
+         }
+         else
+         {
+            mergedLows.add(low);
+            mergedHighs.add(high);
+         }
+      }
+      lows = mergedLows.toArray(new BigDecimal[mergedLows.size()]);
+      highs = mergedHighs.toArray(new BigDecimal[mergedHighs.size()]);
+   }
+   
+   /**
+    * Checks if there is a single amount to find with no tolerance.
+    * 
+    * @return
+    *    True if only exact matches of a single amount count.
+    */
+   boolean isExact()
+   {
+      return exact;
+   }
+   
+   /**
+    * Provides the number of windows after merging.
+    * 
+    * @return
+    *    The number of windows.
+    */
+   int size()
+   {
+      return lows.length;
+   }
+   
+   /**
+    * Provides the lowest total of a window.
+    * 
+    * @param window
+    *    The index of the window.
+    * @return
+    *    The lowest total that matches the window.
+    */
+   BigDecimal getLow(int window)
+   {
+      return lows[window];
+   }
+   
+   /**
+    * Provides the highest total of a window.
+    * 
+    * @param window
+    *    The index of the window.
+    * @return
+    *    The highest total that matches the window.
+    */
+   BigDecimal getHigh(int window)
+   {
+      return highs[window];
+   }
+   
+   /**
+    * Provides the lowest total that can match any window. 
+    * 
+    * @return
+    *    The lowest total of the first window.
+    */
+   BigDecimal getMinimum()
+   {
+      return lows[0];
+   }
+   
+   /**
+    * Provides the highest total that can match any window. 
+    * 
+    * @return
+    *    The highest total of the last window.
+    */
+   BigDecimal getMaximum()
+   {
+      return highs[highs.length - 1];
+   }
+   
+   /**
+    * Checks if the total matches any of the windows.
+    * 
+    * @param total
+    *    The total to check.
+    * @return
+    *    True if the total is within a window.
+    */
+   boolean contains(BigDecimal total)
+   {
+      return intersects(total, total);
+   }
+   
+   /**
+    * Checks if any total from the range passed, inclusive, 
+    * matches any of the windows.
+    * 
+    * @param from
+    *    The lowest total of the range.
+    * @param to
+    *    The highest total of the range.
+    * @return
+    *    True if the range overlaps a window.
+    */
+   boolean intersects(BigDecimal from, BigDecimal to)
+   {
+      // Find the first window whose high is not below the range, and 
+      // check it starts before the range ends.
+      int low = 0;
+      int high = highs.length - 1;
+      while (low < high)
+      {
+         int middle = (low + high) >>> 1;
+         if (highs[middle].compareTo(from) < 0)
+         {
+            low = middle + 1;
+         }
+         else
+         {
+            high = middle;
+         }
+      }
+      return highs[low].compareTo(from) >= 0 && lows[low].compareTo(to) <= 0;
+   }
+   
+   /**
+    * Finds the amount being looked for that is closest to the total. 
+    * 
+    * @param total
+    *    The total of a combination.
+    * @return
+    *    The closest amount to find, the lower one if the total is 
+    *    exactly between two of them.
+    */
+   BigDecimal nearestTarget(BigDecimal total)
+   {
+      BigDecimal nearest = targets[0];
+      BigDecimal distance = total.subtract(nearest).abs();
+      for (int i = 1; i < targets.length; i++)
+      {
+         BigDecimal next = total.subtract(targets[i]).abs();
+         if (next.compareTo(distance) < 0)
+         {
+            nearest = targets[i];
+            distance = next;
+         }
+      }
+      return nearest;
+   }
+}
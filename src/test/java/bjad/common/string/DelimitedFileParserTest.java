@@ -0,0 +1,107 @@
+package bjad.common.string;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test cases for the Delimited File Parser
+ * object.
+ *
+ * @author
+ *  Ben Dougall
+ */
+@SuppressWarnings("javadoc")
+public class DelimitedFileParserTest
+{
+   @TempDir
+   Path tempDir;
+   
+   @Test
+   public void testMatchesRecordReader() throws IOException
+   {
+      Random random = new Random(7);
+      String alphabet = "ab,\"\r\n \u00e9";
+      StringBuilder sb = new StringBuilder("\uFEFF");
+      for (int i = 0; i < 2000; i++)
+      {
+         sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      String text = sb.toString();
+      Path file = tempDir.resolve("records.csv");
+      Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+      
+      List<String> expected = new ArrayList<>();
+      try (DelimitedRecordReader reader = new DelimitedRecordReader(new StringReader(text.substring(1)), ','))
+      {
+         for (DelimitedStringParser record = reader.readRecord(); record != null; record = reader.readRecord())
+         {
+            expected.add(join(record));
+         }
+      }
+      
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try
+      {
+         for (int chunkSize : new int[] {1, 2, 5, 64, 333, DelimitedFileParser.DEFAULT_CHUNK_SIZE})
+         {
+            DelimitedFileParser parser = new DelimitedFileParser(file, ',');
+            parser.setChunkSize(chunkSize);
+            parser.setForkJoinPool(pool);
+            
+            List<String> ordered = new ArrayList<>();
+            assertEquals(expected.size(), parser.parse(record -> ordered.add(join(record))), "Record count");
+            assertEquals(expected, ordered, "Ordered records, chunk size " + chunkSize);
+            
+            List<String> unordered = Collections.synchronizedList(new ArrayList<>());
+            parser.setOrdered(false);
+            assertEquals(expected.size(), parser.parse(record -> unordered.add(join(record))), "Record count");
+            List<String> sortedExpected = new ArrayList<>(expected);
+            Collections.sort(sortedExpected);
+            Collections.sort(unordered);
+            assertEquals(sortedExpected, unordered, "Unordered records, chunk size " + chunkSize);
+         }
+      }
+      finally
+      {
+         pool.shutdown();
+      }
+   }
+   
+   @Test
+   public void testConsumerExceptions() throws IOException
+   {
+      Path file = tempDir.resolve("lines.csv");
+      Files.write(file, "a,b\nc,d\ne,f\n".getBytes(StandardCharsets.UTF_8));
+      DelimitedFileParser parser = new DelimitedFileParser(file, ',');
+      parser.setChunkSize(2);
+      assertThrows(IllegalStateException.class, () -> parser.parse(record ->
+      {
+         throw new IllegalStateException(record.section(0));
+      }));
+      assertThrows(IllegalArgumentException.class,
+            () -> new DelimitedFileParser(file, StandardCharsets.UTF_16, ','));
+   }
+   
+   private static String join(DelimitedStringParser record)
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < record.getNumberOfSections(); i++)
+      {
+         sb.append('[').append(record.section(i)).append(']');
+      }
+      return sb.toString();
+   }
+}
@@ -0,0 +1,76 @@
+package bjad.common.string;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases for the Delimited Record Reader
+ * object.
+ *
+ * @author
+ *  Ben Dougall
+ */
+@SuppressWarnings("javadoc")
+public class DelimitedRecordReaderTest
+{
+   private static final String TEXT =
+         "a,\"fir,st\",second,,3\r\n" +
+         "\r\n" +
+         "\"multi\nline\",\"say \"\"hi\"\"\r\nthere\",\n" +
+         "last";
+   
+   @Test
+   public void testRecords() throws IOException
+   {
+      for (int bufferSize : new int[] {1, 2, 3, 7, DelimitedRecordReader.DEFAULT_BUFFER_SIZE})
+      {
+         try (DelimitedRecordReader reader = new DelimitedRecordReader(new StringReader(TEXT), ',', bufferSize))
+         {
+            DelimitedStringParser record = reader.readRecord();
+            assertEquals(5, record.getNumberOfSections(), "Number of sections");
+            assertEquals("fir,st", record.section(1), "Section 2");
+            assertEquals("", record.section(3), "Section 4");
+            assertEquals("3", record.section(4), "Section 5");
+            
+            record = reader.readRecord();
+            assertEquals(3, record.getNumberOfSections(), "Number of sections");
+            assertEquals("multi\nline", record.section(0), "Section 1");
+            assertEquals("say \"hi\"\r\nthere", record.section(1), "Section 2");
+            assertEquals("", record.section(2), "Section 3");
+            
+            record = reader.readRecord();
+            assertEquals(1, record.getNumberOfSections(), "Number of sections");
+            assertEquals("last", record.section(0), "Section 1");
+            assertEquals(3, reader.getRecordNumber(), "Record number");
+            assertNull(reader.readRecord(), "End of records");
+         }
+      }
+   }
+   
+   @Test
+   public void testMatchesParser() throws IOException
+   {
+      String[] lines = {"a,\"fir,st\",second,,3", "a,\"fir,st\",second,,", " x , \"y\" ,\"\"", "\"a\"\"b\",c"};
+      try (DelimitedRecordReader reader = new DelimitedRecordReader(
+            new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)), ','))
+      {
+         for (String line : lines)
+         {
+            DelimitedStringParser expected = new DelimitedStringParser(line, ',');
+            DelimitedStringParser record = reader.readRecord();
+            assertEquals(expected.getNumberOfSections(), record.getNumberOfSections(), line);
+            for (int i = 0; i < expected.getNumberOfSections(); i++)
+            {
+               assertEquals(expected.section(i), record.section(i), line);
+            }
+         }
+         assertNull(reader.readRecord(), "End of records");
+      }
+   }
+}
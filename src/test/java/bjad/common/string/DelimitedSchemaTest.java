@@ -0,0 +1,96 @@
+package bjad.common.string;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases for the Delimited Schema
+ * object.
+ *
+ * @author
+ *  Ben Dougall
+ */
+@SuppressWarnings("javadoc")
+public class DelimitedSchemaTest
+{
+   private static final DelimitedSchema<Row> SCHEMA = new DelimitedSchema<>(Row::new)
+         .intColumn("id", 0, (row, value) -> row.id = value)
+         .longColumn("count", 1, (row, value) -> row.count = value)
+         .doubleColumn("rate", 2, (row, value) -> row.rate = value)
+         .decimalColumn("amount", 3, (row, value) -> row.amount = value)
+         .booleanColumn("active", 4, (row, value) -> row.active = value)
+         .dateColumn("date", 5, (row, value) -> row.date = value)
+         .dateColumn("other date", 6, DateTimeFormatter.ofPattern("dd/MM/yyyy"), (row, value) -> row.otherDate = value)
+         .stringColumn("name", 7, (row, value) -> row.name = value);
+   
+   @Test
+   public void testBind()
+   {
+      String line = "42, -9000000000 ,0.125,\"-1234.50\",Yes,2024-02-29,31/12/1999,\"Smith, \"\"Jo\"\"\"";
+      for (DelimitedStringParser record : new DelimitedStringParser[] {
+            new DelimitedStringParser(line, ','),
+            new DelimitedStringParser(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, ',')})
+      {
+         Row row = SCHEMA.bind(record);
+         assertEquals(42, row.id, "id");
+         assertEquals(-9000000000L, row.count, "count");
+         assertEquals(0.125, row.rate, "rate");
+         assertEquals(new BigDecimal("-1234.50"), row.amount, "amount");
+         assertTrue(row.active, "active");
+         assertEquals(LocalDate.of(2024, 2, 29), row.date, "date");
+         assertEquals(LocalDate.of(1999, 12, 31), row.otherDate, "other date");
+         assertEquals("Smith, \"Jo\"", row.name, "name");
+      }
+      
+      Row row = SCHEMA.bind(new DelimitedStringParser("1,2,1e3,123456789012345678901.5,n,,,", ','));
+      assertEquals(1000.0, row.rate, "rate");
+      assertEquals(new BigDecimal("123456789012345678901.5"), row.amount, "amount");
+      assertFalse(row.active, "active");
+      assertNull(row.date, "date");
+      assertEquals("", row.name, "name");
+   }
+   
+   @Test
+   public void testColumnErrors()
+   {
+      List<DelimitedColumnError> errors = new ArrayList<>();
+      Row row = SCHEMA.bind(new DelimitedStringParser("2147483648,x1,,1.2.3,maybe,2024-02-30,2024-01-01", ','), errors);
+      assertEquals(7, errors.size(), "Error count");
+      assertEquals("id", errors.get(0).getColumnName(), "Column name");
+      assertEquals("2147483648", errors.get(0).getValue(), "Value");
+      assertEquals(1, errors.get(1).getColumnIndex(), "Column index");
+      assertEquals("", errors.get(2).getValue(), "Value");
+      assertEquals(3, errors.get(3).getColumnIndex(), "Column index");
+      assertEquals("active", errors.get(4).getColumnName(), "Column name");
+      assertEquals("date", errors.get(5).getColumnName(), "Column name");
+      assertEquals("other date", errors.get(6).getColumnName(), "Column name");
+      assertNull(row.name, "Missing name");
+      
+      DelimitedSchemaException ex = assertThrows(DelimitedSchemaException.class,
+            () -> SCHEMA.bind(new DelimitedStringParser("1,2,3", ',')));
+      assertEquals(1, ex.getErrors().size(), "Error count");
+      assertEquals("active", ex.getErrors().get(0).getColumnName(), "Column name");
+      assertNull(ex.getErrors().get(0).getValue(), "Missing value");
+   }
+   
+   private static final class Row
+   {
+      private int id;
+      private long count;
+      private double rate;
+      private BigDecimal amount;
+      private boolean active;
+      private LocalDate date;
+      private LocalDate otherDate;
+      private String name;
+   }
+}
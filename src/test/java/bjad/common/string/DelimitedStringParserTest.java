@@ -1,6 +1,11 @@
 package bjad.common.string;
 
 import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
 import org.junit.jupiter.api.Test;
 
 /**
@@ -36,4 +41,55 @@ public class DelimitedStringParserTest
       DelimitedStringParser parser = new DelimitedStringParser("a,\"fir,st\",second,,", ',');
       assertEquals(5, parser.getNumberOfSections(), "Number of sections");      
    }
+   
+   @Test
+   public void testOtherDelimiters()
+   {
+      DelimitedStringParser parser = new DelimitedStringParser("a|\"b|c\"|d.e|", '|');
+      assertEquals(4, parser.getNumberOfSections(), "Number of sections");
+      assertEquals("b|c", parser.section(1), "Section 2");
+      assertEquals("d.e", parser.section(2), "Section 3");
+      assertEquals("", parser.section(3), "Section 4");
+      
+      parser = new DelimitedStringParser("1.2.", '.');
+      assertEquals(3, parser.getNumberOfSections(), "Number of sections");
+      assertEquals("2", parser.section(1), "Section 2");
+   }
+   
+   @Test
+   public void testSectionViews()
+   {
+      DelimitedStringParser parser = new DelimitedStringParser(" a ,\"say \"\"hi\"\"\",\" b \"", ',');
+      assertEquals("a", parser.sectionView(0).toString(), "Section 1");
+      assertEquals("say \"hi\"", parser.sectionView(1).toString(), "Section 2");
+      assertEquals("b", parser.sectionView(2).toString(), "Section 3");
+      assertEquals(1, parser.sectionView(0).length(), "Section 1 length");
+      assertEquals(0, new DelimitedStringParser("", ',').getNumberOfSections(), "Empty line");
+   }
+   
+   @Test
+   public void testByteSections()
+   {
+      Random random = new Random(3);
+      String alphabet = "ab,| \"\n\u00e9\u20ac";
+      for (int i = 0; i < 2000; i++)
+      {
+         StringBuilder sb = new StringBuilder();
+         int length = random.nextInt(30);
+         for (int j = 0; j < length; j++)
+         {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+         }
+         String line = sb.toString();
+         char delimiter = i % 2 == 0 ? ',' : '|';
+         DelimitedStringParser expected = new DelimitedStringParser(line, delimiter);
+         DelimitedStringParser parser = new DelimitedStringParser(
+               ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, delimiter);
+         assertEquals(expected.getNumberOfSections(), parser.getNumberOfSections(), line);
+         for (int j = 0; j < expected.getNumberOfSections(); j++)
+         {
+            assertEquals(expected.section(j), parser.sectionView(j).toString(), line);
+         }
+      }
+   }
 }
@@ -6,6 +6,11 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.hamcrest.MatcherAssert.assertThat; 
 import static org.hamcrest.Matchers.*;
 
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 
 /**
  * (Description)
@@ -79,6 +84,155 @@ public class SecureStringTests
       assertThat("Decrypted string retrieved correctly", ss.getString(), is("Value"));
    }
    
+   /**
+    * Tests the cached keys give the same results as derived keys, 
+    * and the reused ciphers work across threads, including when one
+    * object is read from several threads at once.
+    */
+   @Test
+   public void testCachedKeysAndCiphers() throws Exception
+   {
+      SecureString.clearKeyCache();
+      for (int i = 0; i < 3; i++)
+      {
+         SecureString ss = new SecureString("Key", "Salt", "Value");
+         assertThat("Cached key creates the correct string", ss.getBase64String(), is("obaroZbL+7Fx2Hg6tIScZQ=="));
+      }
+      assertThat("Different salt creates a different string", 
+            new SecureString("Key", "Salt2", "Value").getBase64String(), is(not("obaroZbL+7Fx2Hg6tIScZQ==")));
+      SecureString.clearKeyCache();
+      assertThat("Derived key after clearing creates the correct string", 
+            new SecureString("Key", "Salt", "Value").getBase64String(), is("obaroZbL+7Fx2Hg6tIScZQ=="));
+      
+      SecureString shared = new SecureString("Key", "Salt", "Shared");
+      List<Thread> threads = new ArrayList<>();
+      AtomicInteger failures = new AtomicInteger();
+      for (int t = 0; t < 4; t++)
+      {
+         final int thread = t;
+         threads.add(new Thread(() -> 
+         {
+            for (int i = 0; i < 200; i++)
+            {
+               SecureString ss = new SecureString("Key", "Salt", "Value " + thread + " " + i);
+               SecureString random = new SecureString("Random " + i);
+               if (!ss.getString().equals("Value " + thread + " " + i) 
+                     || !shared.getString().equals("Shared") 
+                     || !random.getString().equals("Random " + i))
+               {
+                  failures.incrementAndGet();
+               }
+            }
+         }));
+      }
+      for (Thread thread : threads)
+      {
+         thread.start();
+      }
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+      assertThat("No failures across threads", failures.get(), is(0));
+   }
+   
+   /**
+    * Tests the batch encryption and decryption, with errors for 
+    * the values that fail.
+    */
+   @Test
+   public void testEncryptAndDecryptAll()
+   {
+      String[] values = new String[500];
+      for (int i = 0; i < values.length; i++)
+      {
+         values[i] = i == 3 ? null : "Value " + i;
+      }
+      values[0] = "Value";
+      
+      List<SecureStringError> errors = new ArrayList<>();
+      String[] encrypted = SecureString.encryptAll("Key", "Salt", values, errors);
+      assertThat("No encryption errors", errors.size(), is(0));
+      assertThat("Batch encryption matches a single value", encrypted[0], is("obaroZbL+7Fx2Hg6tIScZQ=="));
+      assertThat("Null value encrypts as blank", encrypted[3], is(""));
+      
+      encrypted[5] = "obaroZbL+7Fx2Hg6tI5cZQ==";
+      encrypted[7] = "not~base64";
+      String[] decrypted = SecureString.decryptAll("Key", "Salt", encrypted, errors);
+      assertThat("Two decryption errors", errors.size(), is(2));
+      assertThat("First error index", errors.get(0).getIndex(), is(5));
+      assertThat("Second error index", errors.get(1).getIndex(), is(7));
+      assertThat("Failed value is null", decrypted[5], is(nullValue()));
+      assertThat("Blank value decrypts as blank", decrypted[3], is(""));
+      for (int i = 0; i < values.length; i++)
+      {
+         if (i != 3 && i != 5 && i != 7)
+         {
+            assertThat("Decrypted value " + i, decrypted[i], is(values[i]));
+         }
+      }
+      assertThat("Errors can be ignored", SecureString.decryptAll("Key", "Salt", encrypted, null)[8], is("Value 8"));
+      
+      assertThrows(IllegalArgumentException.class, () -> SecureString.encryptAll("", "Salt", values, null));
+      assertThrows(IllegalArgumentException.class, () -> SecureString.encryptAll("Key", null, values, null));
+      assertThrows(IllegalArgumentException.class, () -> SecureString.decryptAll(null, "Salt", encrypted, null));
+      assertThrows(IllegalArgumentException.class, () -> SecureString.decryptAll("Key", " ", encrypted, null));
+   }
+   
+   /**
+    * Tests keeping the value off the heap, reading and setting it
+    * through character arrays and buffers, and closing the object.
+    */
+   @Test
+   public void testOffHeapCharsAndClose()
+   {
+      try (SecureString ss = new SecureString("Key", "Salt", "Value"))
+      {
+         ss.setOffHeap(true);
+         assertThat("Off heap set", ss.isOffHeap(), is(true));
+         assertThat("Moved value retrieved correctly", ss.getString(), is("Value"));
+         assertThat("Off heap base 64 is unchanged", ss.getBase64String(), is("obaroZbL+7Fx2Hg6tIScZQ=="));
+         
+         char[] chars = {'p', '\u00e4', 's', 's', '\ud83d', '\ude00'};
+         ss.setChars(chars);
+         assertThat("Chars set and retrieved as a string", ss.getString(), is(new String(chars)));
+         assertThat("Chars retrieved as an array", ss.getChars(), is(chars));
+         
+         char[] destination = new char[10];
+         assertThat("Chars written to the array", ss.getChars(destination), is(6));
+         assertThat("Chars written correctly", new String(destination, 0, 6), is(new String(chars)));
+         
+         CharBuffer small = CharBuffer.allocate(3);
+         assertThrows(SecureStringException.class, () -> ss.getChars(small));
+         assertThat("Nothing written to a small buffer", small.position(), is(0));
+         assertThat("Small buffer left clear", small.array(), is(new char[3]));
+         
+         CharBuffer buffer = CharBuffer.allocate(8);
+         buffer.put('x');
+         assertThat("Chars written to the buffer", ss.getChars(buffer), is(6));
+         assertThat("Buffer position moved", buffer.position(), is(7));
+         
+         ss.setOffHeap(false);
+         assertThat("Moved back onto the heap", ss.getString(), is(new String(chars)));
+         ss.setOffHeap(true);
+         assertThat("Base 64 set off heap", ss.setFromBase64String("obaroZbL+7Fx2Hg6tIScZQ=="), is(true));
+         assertThat("Base 64 value retrieved correctly", ss.getString(), is("Value"));
+         
+         ss.setChars((char[])null);
+         assertThat("Null chars returns blank", ss.getString(), is(""));
+         assertThat("Blank value returns no chars", ss.getChars().length, is(0));
+         assertThat("Blank value writes no chars", ss.getChars(destination), is(0));
+      }
+      
+      SecureString closing = new SecureString("Key", "Salt", "Closing");
+      closing.setOffHeap(true);
+      closing.close();
+      assertThat("Closed", closing.isClosed(), is(true));
+      assertThrows(IllegalStateException.class, () -> closing.getString());
+      assertThrows(IllegalStateException.class, () -> closing.getChars(new char[10]));
+      assertThrows(IllegalStateException.class, () -> closing.setString("Again"));
+   }
+   
    /**
     * Tests the secure string exception
     */
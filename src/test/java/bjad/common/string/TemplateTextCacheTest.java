@@ -0,0 +1,88 @@
+package bjad.common.string;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test cases for the Template Text Cache
+ * object.
+ *
+ * @author
+ *  Ben Dougall
+ */
+@SuppressWarnings("javadoc")
+public class TemplateTextCacheTest
+{
+   private static final String TEMPLATE_FILE_URL = 
+         "classpath:///TemplateText.sample.txt";
+   
+   @TempDir
+   Path folder;
+   
+   @AfterEach
+   public void resetCache()
+   {
+      TemplateTextCache.clear();
+      TemplateTextCache.setMaximumSize(TemplateTextCache.DEFAULT_MAXIMUM_SIZE);
+      TemplateTextCache.setCheckModified(false);
+   }
+   
+   @Test
+   public void testCachedTemplates() throws Exception
+   {
+      TemplateTextUtil util = TemplateTextCache.getTemplate(TEMPLATE_FILE_URL);
+      assertSame(util, TemplateTextCache.getTemplate(TEMPLATE_FILE_URL), "Same template");
+      assertNotSame(util, TemplateTextCache.getTemplate(TEMPLATE_FILE_URL, "tpl:", ""), "Different prefix");
+      assertEquals(new TemplateTextUtil(TEMPLATE_FILE_URL).getTemplateText(null), util.getTemplateText(null), "Text");
+      assertEquals(2, TemplateTextCache.size(), "Cache size");
+      
+      TemplateTextCache.setMaximumSize(2);
+      TemplateTextCache.getTemplate(TEMPLATE_FILE_URL);
+      TemplateTextCache.getTemplate(TEMPLATE_FILE_URL, "[", "]");
+      assertEquals(2, TemplateTextCache.size(), "Cache size");
+      assertSame(util, TemplateTextCache.getTemplate(TEMPLATE_FILE_URL), "Recently used template kept");
+      
+      TemplateTextCache.setMaximumSize(1);
+      assertEquals(1, TemplateTextCache.size(), "Cache size");
+      assertSame(util, TemplateTextCache.getTemplate(TEMPLATE_FILE_URL), "Recently used template kept");
+      assertThrows(IllegalArgumentException.class, () -> TemplateTextCache.setMaximumSize(0));
+   }
+   
+   @Test
+   public void testModifiedFiles() throws Exception
+   {
+      Path path = folder.resolve("template.txt");
+      Files.write(path, "Hello {{name}}".getBytes(StandardCharsets.UTF_8));
+      File file = path.toFile();
+      assertTrue(file.setLastModified(1000000000000L), "Modified time set");
+      
+      for (String url : new String[] {file.getAbsolutePath(), file.toURI().toString()})
+      {
+         TemplateTextUtil util = TemplateTextCache.getTemplate(url);
+         assertEquals("Hello Jo", util.getTemplateText(Collections.singletonMap("name", "Jo")), "Text");
+         
+         Files.write(path, "Bye {{name}}".getBytes(StandardCharsets.UTF_8));
+         assertTrue(file.setLastModified(1000000000000L + 2000), "Modified time set");
+         assertSame(util, TemplateTextCache.getTemplate(url), "Modified time not checked");
+         
+         TemplateTextCache.setCheckModified(true);
+         TemplateTextUtil changed = TemplateTextCache.getTemplate(url);
+         assertNotSame(util, changed, "Template loaded again");
+         assertEquals("Bye Jo", changed.getTemplateText(Collections.singletonMap("name", "Jo")), "Text");
+         assertSame(changed, TemplateTextCache.getTemplate(url), "Unchanged template");
+         
+         TemplateTextCache.setCheckModified(false);
+         Files.write(path, "Hello {{name}}".getBytes(StandardCharsets.UTF_8));
+         assertTrue(file.setLastModified(1000000000000L), "Modified time set");
+      }
+   }
+}
@@ -1,10 +1,20 @@
 package bjad.common.string;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
  * Test utility for the TemplateTextUtil object. 
@@ -77,4 +87,156 @@ public class TemplateTextUtilTest
       });
    }
    
+   @Test
+   public void testCompiledTemplates(@TempDir Path tempDir) throws Exception
+   {
+      Path file = tempDir.resolve("template.txt");
+      Files.write(file, "{{{a}} {{b}} {{missing}} {{a}}{{b}} {{a\nc".getBytes(StandardCharsets.UTF_8));
+      TemplateTextUtil util = new TemplateTextUtil(file.toString());
+      HashMap<String, String> replacements = new HashMap<>();
+      replacements.put("a", "1");
+      replacements.put("b", "{{a}}");
+      
+      assertEquals("{1 {{a}} {{missing}} 1{{a}} {{a\nc", util.getTemplateText(replacements), "Compiled text");
+      
+      util = new TemplateTextUtil(file.toString(), "{{", "");
+      replacements.put("a}}", "long");
+      assertEquals("{long {{a}}}} {{missing}} long{{a}}}} 1\nc", util.getTemplateText(replacements), "Longest keys");
+   }
+   
+   @Test
+   public void testRenderAndLazyTemplates(@TempDir Path tempDir) throws Exception
+   {
+      Random random = new Random(11);
+      String alphabet = "{{}}ab\n\r x";
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 30000; i++)
+      {
+         sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      Path file = tempDir.resolve("lazy.txt");
+      Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+      
+      HashMap<String, String> replacements = new HashMap<>();
+      replacements.put("a", "<A>");
+      replacements.put("ab", "<AB>");
+      replacements.put("b}", "<B>");
+      for (String[] endings : new String[][] {{"{{", "}}"}, {"{{", ""}, {"{", "}"}, {"", "}"}})
+      {
+         TemplateTextUtil util = new TemplateTextUtil(file.toString(), endings[0], endings[1]);
+         TemplateTextUtil lazy = new TemplateTextUtil(file.toString(), endings[0], endings[1], true);
+         String expected = util.getTemplateText(replacements);
+         assertTrue(lazy.isLazy(), "Lazy");
+         assertEquals(expected, lazy.getTemplateText(replacements), "Lazy text " + endings[0] + endings[1]);
+         assertEquals(util.getTemplateText(null), lazy.getTemplateText(null), "Lazy original text");
+         
+         StringWriter writer = new StringWriter();
+         util.render(replacements, writer);
+         assertEquals(expected, writer.toString(), "Rendered text");
+         
+         ByteArrayOutputStream stream = new ByteArrayOutputStream();
+         lazy.render(replacements, stream, StandardCharsets.UTF_8);
+         assertEquals(expected, new String(stream.toByteArray(), StandardCharsets.UTF_8), "Rendered bytes");
+      }
+      
+      assertThrows(IOException.class, () -> new TemplateTextUtil("classpath:///TemplateText.missing.txt", "{{", "}}", true));
+   }
+   
+   @Test
+   public void testLazyStrayPrefix(@TempDir Path tempDir) throws Exception
+   {
+      StringBuilder sb = new StringBuilder("{{a}} {{");
+      for (int i = 0; i < 200000; i++)
+      {
+         sb.append(i % 1000 == 0 ? "x{{y}" : "x{y ");
+      }
+      sb.append("{{b}} {{a}}}} {{");
+      for (int i = 0; i < 200000; i++)
+      {
+         sb.append("x{{y ");
+      }
+      Path file = tempDir.resolve("stray.txt");
+      Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+      
+      HashMap<String, String> replacements = new HashMap<>();
+      replacements.put("a", "1");
+      replacements.put("b", "2");
+      TemplateTextUtil util = new TemplateTextUtil(file.toString(), "{{", "}}");
+      TemplateTextUtil lazy = new TemplateTextUtil(file.toString(), "{{", "}}", true);
+      String expected = util.getTemplateText(replacements);
+      assertTrue(expected.contains("2 1}} {{x"), "Templates after the stray prefix replaced");
+      assertEquals(expected, lazy.getTemplateText(replacements), "Lazy text with a stray prefix");
+      assertEquals(sb.toString(), lazy.getTemplateText(null), "Lazy original text with a stray prefix");
+   }
+   
+   @Test
+   public void testLineBreaksAndCharsets(@TempDir Path tempDir) throws Exception
+   {
+      Path file = tempDir.resolve("breaks.txt");
+      String text = "caf\u00e9 {{a}}\r\nline\rline\n\n";
+      Files.write(file, text.getBytes(StandardCharsets.ISO_8859_1));
+      HashMap<String, String> replacements = new HashMap<>();
+      replacements.put("a", "\u00fc");
+      String expected = "caf\u00e9 \u00fc\r\nline\rline\n\n";
+      
+      for (String url : new String[] {file.toString(), file.toUri().toString()})
+      {
+         for (boolean lazy : new boolean[] {false, true})
+         {
+            TemplateTextUtil util = new TemplateTextUtil(url, "{{", "}}", lazy, StandardCharsets.ISO_8859_1);
+            assertEquals(text, util.getTemplateText(null), "Original text");
+            assertEquals(expected, util.getTemplateText(replacements), "Replaced text");
+         }
+      }
+      
+      Path empty = tempDir.resolve("empty.txt");
+      Files.write(empty, new byte[0]);
+      assertEquals("", new TemplateTextUtil(empty.toString()).getTemplateText(null), "Empty text");
+   }
+   
+   @Test
+   public void testSections(@TempDir Path tempDir) throws Exception
+   {
+      Path file = tempDir.resolve("invoice.txt");
+      Files.write(file, ("Invoice {{number}}\n{{#items}}{{name}} x{{quantity}}{{#taxed}} (tax){{/taxed}} for {{number}}\n"
+            + "{{/items}}{{^items}}No items\n{{/items}}{{#tags}}[{{.}}]{{/tags}}{{#paid}} paid{{/paid}}{{missing}}")
+            .getBytes(StandardCharsets.UTF_8));
+      HashMap<String, Object> first = new HashMap<>();
+      first.put("name", "Bolt");
+      first.put("quantity", 4);
+      first.put("taxed", true);
+      HashMap<String, Object> second = new HashMap<>();
+      second.put("name", "Nut");
+      second.put("quantity", 10);
+      HashMap<String, Object> data = new HashMap<>();
+      data.put("number", "A1");
+      data.put("items", Arrays.asList(first, second));
+      data.put("tags", new String[] {"x", "y"});
+      data.put("paid", false);
+      
+      for (boolean lazy : new boolean[] {false, true})
+      {
+         TemplateTextUtil util = new TemplateTextUtil(file.toString(), "{{", "}}", lazy);
+         assertEquals("Invoice A1\nBolt x4 (tax) for A1\nNut x10 for A1\n[x][y]{{missing}}", 
+               util.getSectionText(data), "Section text");
+         
+         data.put("items", Collections.emptyList());
+         data.put("paid", "yes");
+         StringWriter writer = new StringWriter();
+         util.renderSections(data, writer);
+         assertEquals("Invoice A1\nNo items\n[x][y] paid{{missing}}", writer.toString(), "Rendered sections");
+         data.put("items", Arrays.asList(first, second));
+         data.put("paid", false);
+      }
+      
+      Map<String, Object> none = Collections.emptyMap();
+      for (String text : new String[] {"{{#a}}", "{{/a}}", "{{#a}}{{/b}}"})
+      {
+         Path bad = tempDir.resolve("bad.txt");
+         Files.write(bad, text.getBytes(StandardCharsets.UTF_8));
+         TemplateTextUtil util = new TemplateTextUtil(bad.toString());
+         assertThrows(IllegalStateException.class, () -> util.getSectionText(none), text);
+      }
+      assertThrows(IllegalStateException.class, () -> new TemplateTextUtil(file.toString(), "{{", "").getSectionText(none));
+   }
 }
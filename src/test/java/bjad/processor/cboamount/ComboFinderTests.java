@@ -0,0 +1,858 @@
+package bjad.processor.cboamount;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the ComboFinder search strategies.
+ *
+ * @author 
+ *   Ben Dougall
+ */
+public class ComboFinderTests
+{
+   private static final String[] SAMPLE_AMOUNTS = 
+   {
+      "1.00", "10.00", "5.00", "9.00", "15.00", "1.01", "2.02", "3.3", 
+      "1.96", "5.56", "100.01", "26.02", "39.3", "12.46", "54.56"
+   };
+   
+   /**
+    * Creates the elements for the amounts passed.
+    * 
+    * @param amounts
+    *    The amounts to create elements for.
+    * @return
+    *    The list of elements.
+    */
+   protected static List<ComboFinderElement> elementsFor(String... amounts)
+   {
+      List<ComboFinderElement> elements = new ArrayList<>();
+      for (String amount : amounts)
+      {
+         final BigDecimal value = new BigDecimal(amount);
+         elements.add(() -> value);
+      }
+      return elements;
+   }
+   
+   /**
+    * Creates random two decimal place elements. 
+    * 
+    * @param count
+    *    The number of elements to create. 
+    * @param seed
+    *    The seed for the random amounts.
+    * @return
+    *    The list of elements.
+    */
+   protected static List<ComboFinderElement> randomElements(int count, long seed)
+   {
+      Random random = new Random(seed);
+      List<ComboFinderElement> elements = new ArrayList<>();
+      for (int i = 0; i < count; i++)
+      {
+         final BigDecimal value = BigDecimal.valueOf(random.nextInt(100_000) + 1, 2);
+         elements.add(() -> value);
+      }
+      return elements;
+   }
+   
+   /**
+    * Converts the results into sets of the elements within each combination 
+    * so results from different strategies can be compared regardless of order.
+    * 
+    * @param results
+    *    The results to convert.
+    * @return
+    *    The set of combinations.
+    */
+   protected static Set<Set<ComboFinderElement>> asSets(List<FoundComboResultList> results)
+   {
+      Set<Set<ComboFinderElement>> sets = new HashSet<>();
+      for (FoundComboResultList result : results)
+      {
+         sets.add(new HashSet<>(result.getComboElements()));
+      }
+      return sets;
+   }
+   
+   /**
+    * Adds up the amounts of the elements within the combination.
+    * 
+    * @param result
+    *    The combination to add up.
+    * @return
+    *    The total of the combination.
+    */
+   protected static BigDecimal totalOf(FoundComboResultList result)
+   {
+      BigDecimal total = BigDecimal.ZERO;
+      for (ComboFinderElement element : result.getComboElements())
+      {
+         total = total.add(element.getComboAmount());
+      }
+      return total;
+   }
+   
+   /**
+    * Runs the finder with the strategy passed. 
+    * 
+    * @param elements
+    *    The elements to search through.
+    * @param amount
+    *    The amount to find.
+    * @param strategy
+    *    The strategy to use.
+    * @return
+    *    The results of the search.
+    */
+   protected static List<FoundComboResultList> find(List<ComboFinderElement> elements, String amount, ComboSearchStrategy strategy)
+   {
+      ComboFinder finder = new ComboFinder(elements, new BigDecimal(amount));
+      finder.setStrategy(strategy);
+      return finder.findCombinationsForAmount();
+   }
+   
+   /**
+    * Tests the backtracking search against the sample data.
+    */
+   @Test
+   public void testBacktracking()
+   {
+      List<ComboFinderElement> elements = elementsFor(SAMPLE_AMOUNTS);
+      assertThat("No matches for 1000", find(elements, "1000.00", ComboSearchStrategy.BACKTRACKING).size(), is(0));
+      assertThat("One match for 12.46", find(elements, "12.46", ComboSearchStrategy.BACKTRACKING).size(), is(1));
+      assertThat("Two matches for 10.00", find(elements, "10.00", ComboSearchStrategy.BACKTRACKING).size(), is(2));
+      for (FoundComboResultList result : find(elements, "10.00", ComboSearchStrategy.BACKTRACKING))
+      {
+         assertThat("Element list is only built on access", result.comboElements, is(nullValue()));
+         assertThat("Combination size", result.getComboSize(), is(result.getComboElements().size()));
+      }
+   }
+   
+   /**
+    * Lists every combination of the elements adding up to the amount
+    * by counting through the subsets in binary, the way the finder 
+    * originally searched, with the elements sorted by largest absolute
+    * amount first and the first element as the highest bit. Elements 
+    * with a zero amount are never part of a combination.
+    * 
+    * @param elements
+    *    The elements to search through.
+    * @param amount
+    *    The amount to find.
+    * @return
+    *    The elements of each combination, in the order counted.
+    */
+   protected static List<List<ComboFinderElement>> enumerate(List<? extends ComboFinderElement> elements, String amount)
+   {
+      List<ComboFinderElement> sorted = new ArrayList<>();
+      for (ComboFinderElement element : elements)
+      {
+         if (element.getComboAmount().signum() != 0)
+         {
+            sorted.add(element);
+         }
+      }
+      sorted.sort((o1, o2) -> o2.getComboAmount().abs().compareTo(o1.getComboAmount().abs()));
+      
+      List<List<ComboFinderElement>> combinations = new ArrayList<>();
+      int count = sorted.size();
+      for (long possibility = 1; possibility < 1L << count; possibility++)
+      {
+         List<ComboFinderElement> combination = new ArrayList<>();
+         BigDecimal total = BigDecimal.ZERO;
+         for (int i = 0; i < count; i++)
+         {
+            if ((possibility & (1L << (count - 1 - i))) != 0)
+            {
+               combination.add(sorted.get(i));
+               total = total.add(sorted.get(i).getComboAmount());
+            }
+         }
+         if (total.compareTo(new BigDecimal(amount)) == 0)
+         {
+            combinations.add(combination);
+         }
+      }
+      return combinations;
+   }
+   
+   /**
+    * Tests the backtracking search, and the finder within 
+    * bjad.cboamount, return the same combinations in the same order 
+    * as counting through every subset, including zero, negative and 
+    * duplicate amounts.
+    */
+   @Test
+   public void testBacktrackingMatchesEnumeration()
+   {
+      String[] choices = {"0.00", "5.00", "5.00", "-5.00", "10.00", "2.50", "-2.50", "7.50", "0.00", "12.50"};
+      Random random = new Random(27);
+      for (int run = 0; run < 20; run++)
+      {
+         List<bjad.cboamount.ComboFinderElement> elements = new ArrayList<>();
+         for (int i = 0; i < 14; i++)
+         {
+            final BigDecimal value = new BigDecimal(choices[random.nextInt(choices.length)]);
+            elements.add(() -> value);
+         }
+         for (String amount : new String[] {"0.00", "5.00", "-5.00", "15.00", "20.00"})
+         {
+            List<List<ComboFinderElement>> expected = enumerate(elements, amount);
+            
+            ComboFinder finder = new ComboFinder(new ArrayList<ComboFinderElement>(elements), new BigDecimal(amount));
+            finder.setStrategy(ComboSearchStrategy.BACKTRACKING);
+            List<List<ComboFinderElement>> found = new ArrayList<>();
+            for (FoundComboResultList result : finder.findCombinationsForAmount())
+            {
+               found.add(result.getComboElements());
+            }
+            assertThat("Backtracking matches the enumeration for " + amount, found, is(expected));
+            
+            found.clear();
+            for (bjad.cboamount.FoundComboResultList result : 
+               new bjad.cboamount.ComboFinder(elements, new BigDecimal(amount)).findCombinationsForAmount())
+            {
+               found.add(new ArrayList<ComboFinderElement>(result.getComboElements()));
+            }
+            assertThat("bjad.cboamount matches the enumeration for " + amount, found, is(expected));
+         }
+      }
+   }
+   
+   /**
+    * Tests the meet in the middle search finds the same combinations
+    * as the backtracking search.
+    */
+   @Test
+   public void testMeetInTheMiddleMatchesBacktracking()
+   {
+      List<ComboFinderElement> elements = elementsFor(SAMPLE_AMOUNTS);
+      for (String amount : new String[] {"1000.00", "12.46", "10.00", "20.02", "56.52"})
+      {
+         assertThat(
+               "Meet in the middle finds the same combinations for " + amount, 
+               asSets(find(elements, amount, ComboSearchStrategy.MEET_IN_THE_MIDDLE)), 
+               is(asSets(find(elements, amount, ComboSearchStrategy.BACKTRACKING))));
+      }
+   }
+   
+   /**
+    * Tests the meet in the middle search on 40 elements, looking for 
+    * the total of a known subset of them.
+    */
+   @Test
+   public void testMeetInTheMiddleFortyElements()
+   {
+      List<ComboFinderElement> elements = randomElements(40, 26);
+      Set<ComboFinderElement> expected = new HashSet<>();
+      BigDecimal amount = BigDecimal.ZERO;
+      for (int i = 0; i < elements.size(); i += 4)
+      {
+         expected.add(elements.get(i));
+         amount = amount.add(elements.get(i).getComboAmount());
+      }
+      
+      List<FoundComboResultList> results = find(elements, amount.toPlainString(), ComboSearchStrategy.MEET_IN_THE_MIDDLE);
+      assertThat("Known combination is found", asSets(results).contains(expected), is(true));
+      for (FoundComboResultList result : results)
+      {
+         assertThat("Every combination adds up to the amount", totalOf(result).compareTo(amount), is(0));
+      }
+   }
+   
+   /**
+    * Tests the memory the meet in the middle search needs, and lists
+    * whose subset totals do not fit within the memory limit, or which
+    * are over the element limit, fall back to the backtracking search.
+    */
+   @Test
+   public void testMeetInTheMiddleMemory()
+   {
+      assertThat("Memory for an odd element count", MeetInTheMiddleSearch.requiredMemory(5), is(12L * (4 + 2 * 8)));
+      assertThat("Memory for 50 elements", MeetInTheMiddleSearch.requiredMemory(50), is(12L * 3 * (1L << 25)));
+      
+      for (int count : new int[] {50, MeetInTheMiddleSearch.MAX_ELEMENTS + 6})
+      {
+         List<ComboFinderElement> elements = randomElements(count, 28);
+         BigDecimal amount = elements.get(0).getComboAmount().add(elements.get(1).getComboAmount());
+         ComboFinder finder = new ComboFinder(elements, amount);
+         finder.setMeetInTheMiddleMemoryLimit(256L << 20);
+         finder.setStrategy(ComboSearchStrategy.MEET_IN_THE_MIDDLE);
+         Set<Set<ComboFinderElement>> found = asSets(finder.findCombinationsForAmount());
+         assertThat("Falls back to backtracking for " + count + " elements", 
+               found, is(asSets(find(elements, amount.toPlainString(), ComboSearchStrategy.BACKTRACKING))));
+      }
+   }
+   
+   /**
+    * Tests the dynamic programming search finds the same combinations, 
+    * in the same order, as the backtracking search.
+    */
+   @Test
+   public void testDynamicProgrammingMatchesBacktracking()
+   {
+      List<ComboFinderElement> elements = elementsFor(SAMPLE_AMOUNTS);
+      for (String amount : new String[] {"1000.00", "12.46", "10.00", "20.02", "56.52"})
+      {
+         List<FoundComboResultList> expected = find(elements, amount, ComboSearchStrategy.BACKTRACKING);
+         List<FoundComboResultList> actual = find(elements, amount, ComboSearchStrategy.DYNAMIC_PROGRAMMING);
+         assertThat("Same number of combinations for " + amount, actual.size(), is(expected.size()));
+         for (int i = 0; i < expected.size(); i++)
+         {
+            assertThat(
+                  "Same combination at index " + i + " for " + amount, 
+                  actual.get(i).getComboElements(), 
+                  is(expected.get(i).getComboElements()));
+         }
+      }
+   }
+   
+   /**
+    * Tests the automatic strategy on hundreds of elements, which
+    * would never finish with backtracking, and the first combination
+    * and count functions.
+    */
+   @Test
+   public void testDynamicProgrammingManyElements()
+   {
+      List<ComboFinderElement> elements = new ArrayList<>();
+      Random random = new Random(29);
+      for (int i = 0; i < 300; i++)
+      {
+         final BigDecimal value = BigDecimal.valueOf(random.nextInt(5_000) + 1_000, 2);
+         elements.add(() -> value);
+      }
+      BigDecimal amount = BigDecimal.ZERO;
+      for (int i = 0; i < 5; i++)
+      {
+         amount = amount.add(elements.get(i * 50).getComboAmount());
+      }
+      
+      ComboFinder finder = new ComboFinder(elements, amount);
+      FoundComboResultList first = finder.findFirstCombinationForAmount();
+      assertThat("A combination is found", first != null, is(true));
+      assertThat("The combination adds up to the amount", totalOf(first).compareTo(amount), is(0));
+      assertThat("Many combinations are counted", finder.countCombinationsForAmount() > 1, is(true));
+   }
+   
+   /**
+    * Tests counting the combinations of identical amounts. 
+    */
+   @Test
+   public void testCountCombinations()
+   {
+      String[] amounts = new String[40];
+      Arrays.fill(amounts, "25.00");
+      ComboFinder finder = new ComboFinder(elementsFor(amounts), new BigDecimal("100.00"));
+      
+      // 40 choose 4
+      assertThat("Dynamic programming count", finder.countCombinationsForAmount(), is(91_390L));
+      
+      finder.setStrategy(ComboSearchStrategy.BACKTRACKING);
+      assertThat("Backtracking count", finder.countCombinationsForAmount(), is(91_390L));
+   }
+   
+   /**
+    * Tests the parallel search finds the same combinations, in the 
+    * same order, as the backtracking search.
+    */
+   @Test
+   public void testParallelMatchesBacktracking()
+   {
+      List<ComboFinderElement> elements = randomElements(22, 30);
+      BigDecimal amount = BigDecimal.ZERO;
+      for (int i = 0; i < elements.size(); i += 2)
+      {
+         amount = amount.add(elements.get(i).getComboAmount());
+      }
+      
+      List<FoundComboResultList> expected = find(elements, amount.toPlainString(), ComboSearchStrategy.BACKTRACKING);
+      List<FoundComboResultList> actual = find(elements, amount.toPlainString(), ComboSearchStrategy.PARALLEL);
+      assertThat("Same number of combinations", actual.size(), is(expected.size()));
+      for (int i = 0; i < expected.size(); i++)
+      {
+         assertThat(
+               "Same combination at index " + i, 
+               actual.get(i).getComboElements(), 
+               is(expected.get(i).getComboElements()));
+      }
+   }
+   
+   /**
+    * Tests streaming the results to a listener, with the maximum 
+    * results and the listener stopping the search.
+    */
+   @Test
+   public void testResultListener()
+   {
+      String[] amounts = new String[20];
+      Arrays.fill(amounts, "25.00");
+      ComboFinder finder = new ComboFinder(elementsFor(amounts), new BigDecimal("100.00"));
+      finder.setStrategy(ComboSearchStrategy.BACKTRACKING);
+      finder.setMaxResults(10);
+      
+      List<FoundComboResultList> streamed = new ArrayList<>();
+      assertThat("Maximum results stops the search", 
+            finder.findCombinationsForAmount(streamed::add), is(ComboSearchStatus.MAX_RESULTS_REACHED));
+      assertThat("Maximum results were streamed", streamed.size(), is(10));
+      assertThat("Combination size without the list", streamed.get(0).getComboSize(), is(4));
+      assertThat("Combination list created on access", streamed.get(0).getComboElements().size(), is(4));
+      
+      finder.setMaxResults(0);
+      streamed.clear();
+      assertThat("Listener stops the search", 
+            finder.findCombinationsForAmount((r) -> streamed.add(r) && streamed.size() < 3), 
+            is(ComboSearchStatus.STOPPED_BY_LISTENER));
+      assertThat("Listener stopped after 3 results", streamed.size(), is(3));
+      
+      assertThat("All 4845 combinations found", finder.findCombinationsForAmount().size(), is(4845));
+      assertThat("Search completed", finder.getLastSearchStatus(), is(ComboSearchStatus.COMPLETE));
+   }
+   
+   /**
+    * Tests the search stops at the deadline. 
+    */
+   @Test
+   public void testDeadline()
+   {
+      String[] amounts = new String[40];
+      Arrays.fill(amounts, "25.00");
+      ComboFinder finder = new ComboFinder(elementsFor(amounts), new BigDecimal("500.00"));
+      finder.setStrategy(ComboSearchStrategy.BACKTRACKING);
+      finder.setDeadline(Instant.now().plusMillis(200));
+      
+      List<FoundComboResultList> results = finder.findCombinationsForAmount();
+      assertThat("Search stopped at the deadline", finder.getLastSearchStatus(), is(ComboSearchStatus.DEADLINE_REACHED));
+      assertThat("Partial results returned", results.isEmpty(), is(false));
+   }
+   
+   /**
+    * Tests searching for more than one amount, with and without a
+    * tolerance, checking every strategy finds the same combinations
+    * and the results are ordered by how close they are. 
+    */
+   @Test
+   public void testToleranceAndMultipleAmounts()
+   {
+      List<ComboFinderElement> elements = elementsFor(SAMPLE_AMOUNTS);
+      ComboFinder finder = new ComboFinder(elements, Arrays.asList(new BigDecimal("10.00"), new BigDecimal("12.46")));
+      assertThat("Matches for both amounts", finder.findCombinationsForAmount().size(), is(3));
+      
+      finder = new ComboFinder(elements, Arrays.asList(new BigDecimal("10.00"), new BigDecimal("20.00")));
+      BigDecimal tolerance = new BigDecimal("0.05");
+      finder.setTolerance(tolerance);
+      finder.setStrategy(ComboSearchStrategy.BACKTRACKING);
+      List<FoundComboResultList> expected = finder.findCombinationsForAmount();
+      assertThat("Near matches found", expected.size() > 3, is(true));
+      assertThat("Count matches results", finder.countCombinationsForAmount(), is((long)expected.size()));
+      
+      BigDecimal previous = BigDecimal.ZERO;
+      for (FoundComboResultList result : expected)
+      {
+         assertThat("Total is reported", result.getComboTotal().compareTo(totalOf(result)), is(0));
+         assertThat("Within the tolerance", result.getDifference().abs().compareTo(tolerance) <= 0, is(true));
+         assertThat("Closest results first", result.getDifference().abs().compareTo(previous) >= 0, is(true));
+         previous = result.getDifference().abs();
+      }
+      
+      for (ComboSearchStrategy strategy : ComboSearchStrategy.values())
+      {
+         finder.setStrategy(strategy);
+         assertThat(strategy + " finds the same combinations", 
+               asSets(finder.findCombinationsForAmount()), is(asSets(expected)));
+         assertThat(strategy + " counts the same combinations", 
+               finder.countCombinationsForAmount(), is((long)expected.size()));
+      }
+   }
+
+   /**
+    * Tests elements with negative amounts, such as credits, are 
+    * found by every strategy, checking against every subset of the 
+    * elements.
+    */
+   @Test
+   public void testNegativeAmounts()
+   {
+      List<ComboFinderElement> elements = elementsFor("100.00", "-30.00", "50.00");
+      assertThat("Credit brings a larger amount down", find(elements, "70.00", ComboSearchStrategy.AUTOMATIC).size(), is(1));
+      assertThat("Netting to a negative amount", find(elements, "-30.00", ComboSearchStrategy.AUTOMATIC).size(), is(1));
+      
+      Random random = new Random(33);
+      elements = new ArrayList<>();
+      for (int i = 0; i < 16; i++)
+      {
+         final BigDecimal value = BigDecimal.valueOf(random.nextInt(2_000) - 800, 2);
+         elements.add(() -> value);
+      }
+      for (String amount : new String[] {"0.00", "12.34", "-5.00", "25.00"})
+      {
+         Set<Set<ComboFinderElement>> expected = new HashSet<>();
+         for (int mask = 1; mask < 1 << elements.size(); mask++)
+         {
+            Set<ComboFinderElement> subset = new HashSet<>();
+            BigDecimal total = BigDecimal.ZERO;
+            for (int i = 0; i < elements.size(); i++)
+            {
+               if ((mask & (1 << i)) != 0)
+               {
+                  subset.add(elements.get(i));
+                  total = total.add(elements.get(i).getComboAmount());
+               }
+            }
+            if (total.compareTo(new BigDecimal(amount)) == 0)
+            {
+               expected.add(subset);
+            }
+         }
+         
+         ComboFinder finder = new ComboFinder(elements, new BigDecimal(amount));
+         for (ComboSearchStrategy strategy : ComboSearchStrategy.values())
+         {
+            finder.setStrategy(strategy);
+            assertThat(strategy + " finds every combination for " + amount, 
+                  asSets(finder.findCombinationsForAmount()), is(expected));
+            assertThat(strategy + " counts every combination for " + amount, 
+                  finder.countCombinationsForAmount(), is((long)expected.size()));
+         }
+      }
+   }
+   
+   /**
+    * Tests grouping elements with the same amount, both expanded to
+    * every combination of elements and as distinct sets of amounts.
+    */
+   @Test
+   public void testDuplicateAmounts()
+   {
+      List<ComboFinderElement> elements = elementsFor(
+            "25.00", "10.00", "25.00", "-5.00", "10.00", "25.00", "5.00", "25.0", "-5.00", "15.00");
+      ComboFinder finder = new ComboFinder(elements, new BigDecimal("50.00"));
+      finder.setStrategy(ComboSearchStrategy.BACKTRACKING);
+      Set<Set<ComboFinderElement>> expected = asSets(finder.findCombinationsForAmount());
+      
+      finder.setDuplicateHandling(ComboDuplicateHandling.EXPANDED);
+      List<FoundComboResultList> expanded = finder.findCombinationsForAmount();
+      assertThat("Expanded finds every combination", asSets(expanded), is(expected));
+      assertThat("Expanded finds each combination once", expanded.size(), is(expected.size()));
+      assertThat("Expanded count", finder.countCombinationsForAmount(), is((long)expected.size()));
+      
+      finder.setDuplicateHandling(ComboDuplicateHandling.DISTINCT_AMOUNTS);
+      Set<List<BigDecimal>> distinctAmounts = new HashSet<>();
+      for (FoundComboResultList result : finder.findCombinationsForAmount())
+      {
+         List<BigDecimal> amounts = new ArrayList<>();
+         for (ComboFinderElement element : result.getComboElements())
+         {
+            amounts.add(element.getComboAmount().stripTrailingZeros());
+         }
+         assertThat("Each set of amounts found once", distinctAmounts.add(amounts), is(true));
+         assertThat("Distinct amounts add up", totalOf(result).compareTo(new BigDecimal("50.00")), is(0));
+      }
+      assertThat("Distinct count", finder.countCombinationsForAmount(), is((long)distinctAmounts.size()));
+      
+      String[] fees = new String[400];
+      Arrays.fill(fees, "25.00");
+      finder = new ComboFinder(elementsFor(fees), new BigDecimal("100.00"));
+      finder.setDuplicateHandling(ComboDuplicateHandling.EXPANDED);
+      // 400 choose 4
+      assertThat("Hundreds of identical amounts counted", finder.countCombinationsForAmount(), is(1_050_739_900L));
+      finder.setDuplicateHandling(ComboDuplicateHandling.DISTINCT_AMOUNTS);
+      assertThat("One distinct set of amounts", finder.findCombinationsForAmount().size(), is(1));
+   }
+   
+   /**
+    * Tests the progress listener, the cancellation token, and the
+    * step and time limits.
+    */
+   @Test
+   public void testProgressCancellationAndLimits()
+   {
+      List<ComboFinderElement> elements = randomElements(22, 35);
+      BigDecimal amount = BigDecimal.ZERO;
+      for (int i = 0; i < elements.size(); i += 3)
+      {
+         amount = amount.add(elements.get(i).getComboAmount());
+      }
+      
+      final List<Double> fractions = new ArrayList<>();
+      final List<Long> matches = new ArrayList<>();
+      for (ComboSearchStrategy strategy : ComboSearchStrategy.values())
+      {
+         fractions.clear();
+         matches.clear();
+         ComboFinder finder = new ComboFinder(elements, amount);
+         finder.setStrategy(strategy);
+         finder.setProgressInterval(Duration.ZERO);
+         finder.setProgressListener((fraction, found) -> 
+         {
+            fractions.add(fraction);
+            matches.add(found);
+         });
+         int found = finder.findCombinationsForAmount().size();
+         
+         for (int i = 1; i < fractions.size(); i++)
+         {
+            assertThat(strategy + " progress only goes up", fractions.get(i) >= fractions.get(i - 1), is(true));
+         }
+         assertThat(strategy + " finished fully explored", fractions.get(fractions.size() - 1), is(1.0));
+         assertThat(strategy + " final match count", matches.get(matches.size() - 1), is((long)found));
+      }
+      
+      String[] amounts = new String[40];
+      Arrays.fill(amounts, "25.00");
+      ComboFinder finder = new ComboFinder(elementsFor(amounts), new BigDecimal("500.00"));
+      finder.setStrategy(ComboSearchStrategy.BACKTRACKING);
+      
+      ComboCancellationToken token = new ComboCancellationToken();
+      finder.setCancellationToken(token);
+      finder.setProgressInterval(Duration.ZERO);
+      finder.setProgressListener((fraction, found) -> token.cancel());
+      finder.findCombinationsForAmount();
+      assertThat("Search cancelled", finder.getLastSearchStatus(), is(ComboSearchStatus.CANCELLED));
+      finder.setCancellationToken(null);
+      finder.setProgressListener(null);
+      
+      finder.setMaxSteps(100_000);
+      List<FoundComboResultList> first = finder.findCombinationsForAmount();
+      assertThat("Search stopped at the step limit", finder.getLastSearchStatus(), is(ComboSearchStatus.STEP_LIMIT_REACHED));
+      assertThat("Partial results returned", first.isEmpty(), is(false));
+      assertThat("Step limit stops at the same point", asSets(finder.findCombinationsForAmount()), is(asSets(first)));
+      finder.setStrategy(ComboSearchStrategy.PARALLEL);
+      finder.findCombinationsForAmount();
+      assertThat("Parallel search stopped at the step limit", finder.getLastSearchStatus(), is(ComboSearchStatus.STEP_LIMIT_REACHED));
+      finder.setStrategy(ComboSearchStrategy.BACKTRACKING);
+      finder.setMaxSteps(0);
+      
+      finder.setTimeLimit(Duration.ofMillis(200));
+      finder.findCombinationsForAmount();
+      assertThat("Search stopped at the time limit", finder.getLastSearchStatus(), is(ComboSearchStatus.DEADLINE_REACHED));
+   }
+   
+   /**
+    * Tests the built in solvers through the automatic chooser, and a
+    * custom solver using only the public search context.
+    */
+   @Test
+   public void testSolvers()
+   {
+      List<ComboFinderElement> elements = randomElements(24, 36);
+      BigDecimal amount = BigDecimal.ZERO;
+      for (int i = 0; i < elements.size(); i += 2)
+      {
+         amount = amount.add(elements.get(i).getComboAmount());
+      }
+      
+      // Without dynamic programming, 24 elements are cheaper for meet in 
+      // the middle, which is sorted back into the backtracking order.
+      ComboFinder finder = new ComboFinder(elements, amount);
+      finder.setDynamicProgrammingLimit(0);
+      finder.setStrategy(ComboSearchStrategy.BACKTRACKING);
+      List<FoundComboResultList> expected = finder.findCombinationsForAmount();
+      finder.setStrategy(ComboSearchStrategy.AUTOMATIC);
+      List<FoundComboResultList> actual = finder.findCombinationsForAmount();
+      assertThat("Same number of combinations", actual.size(), is(expected.size()));
+      for (int i = 0; i < expected.size(); i++)
+      {
+         assertThat("Same combination at index " + i, actual.get(i).getComboElements(), is(expected.get(i).getComboElements()));
+      }
+      
+      elements = elementsFor(SAMPLE_AMOUNTS);
+      finder = new ComboFinder(elements, new BigDecimal("10.00"));
+      finder.setStrategy(ComboSearchStrategy.EXHAUSTIVE);
+      assertThat("Exhaustive search", asSets(finder.findCombinationsForAmount()), 
+            is(asSets(find(elements, "10.00", ComboSearchStrategy.BACKTRACKING))));
+      
+      finder.setSolver(new ComboSolver()
+      {
+         @Override
+         public boolean supports(ComboSearchContext context)
+         {
+            return true;
+         }
+         
+         @Override
+         public double estimateCost(ComboSearchContext context)
+         {
+            return context.getElementCount();
+         }
+         
+         @Override
+         public void solve(ComboSearchContext context)
+         {
+            long[] mask = new long[1];
+            for (int i = 0; i < context.getElementCount() && !context.isStopped(); i++)
+            {
+               if (context.isMatch(context.getAmount(i)))
+               {
+                  mask[0] = 1L << i;
+                  context.addMatch(mask);
+               }
+            }
+         }
+      });
+      List<FoundComboResultList> single = finder.findCombinationsForAmount();
+      assertThat("Custom solver used", single.size(), is(1));
+      assertThat("Custom solver's match", single.get(0).getComboElements().get(0).getComboAmount(), is(new BigDecimal("10.00")));
+      
+      finder.setSolver(new ComboSolverChooser(
+            ComboSearchStrategy.EXHAUSTIVE.getSolver(), ComboSearchStrategy.DYNAMIC_PROGRAMMING.getSolver()));
+      assertThat("Chooser finds every combination", finder.findCombinationsForAmount().size(), is(2));
+   }
+   
+   /**
+    * Tests the AUTOMATIC strategy only picks the meet in the middle 
+    * search when its subset totals fit within the memory limit, and the
+    * dynamic programming search when its table fits within its memory 
+    * limit, staying on backtracking otherwise.
+    */
+   @Test
+   public void testAutomaticMemoryLimit()
+   {
+      ComboSolverChooser automatic = (ComboSolverChooser)ComboSearchStrategy.AUTOMATIC.getSolver();
+      final List<ComboSolver> chosen = new ArrayList<>();
+      ComboSolver recorder = new ComboSolver()
+      {
+         @Override
+         public boolean supports(ComboSearchContext context)
+         {
+            chosen.add(automatic.choose(context));
+            return true;
+         }
+         
+         @Override
+         public double estimateCost(ComboSearchContext context)
+         {
+            return 0;
+         }
+         
+         @Override
+         public void solve(ComboSearchContext context)
+         {
+            // Only the choice is being tested.
+         }
+      };
+      
+      for (int count : new int[] {30, 50, 60})
+      {
+         List<ComboFinderElement> elements = randomElements(count, 36);
+         BigDecimal amount = BigDecimal.ZERO;
+         for (int i = 0; i < count; i += 2)
+         {
+            amount = amount.add(elements.get(i).getComboAmount());
+         }
+         ComboFinder finder = new ComboFinder(elements, amount);
+         finder.setSolver(recorder);
+         finder.setDynamicProgrammingLimit(1);
+         finder.setMeetInTheMiddleMemoryLimit(256L << 20);
+         
+         chosen.clear();
+         finder.findCombinationsForAmount();
+         ComboSolver expected = MeetInTheMiddleSearch.requiredMemory(count) <= 256L << 20 
+               ? ComboSearchStrategy.MEET_IN_THE_MIDDLE.getSolver() : ComboSearchStrategy.BACKTRACKING.getSolver();
+         assertThat("Solver chosen for " + count + " elements", chosen.get(0), is(expected));
+         
+         finder.setMeetInTheMiddleMemoryLimit(1 << 20);
+         chosen.clear();
+         finder.findCombinationsForAmount();
+         assertThat("Solver chosen within the memory limit for " + count + " elements", 
+               chosen.get(0), is(ComboSearchStrategy.BACKTRACKING.getSolver()));
+         
+         finder.setDynamicProgrammingLimit(Long.MAX_VALUE / 4);
+         chosen.clear();
+         finder.findCombinationsForAmount();
+         assertThat("Dynamic programming chosen for " + count + " elements", 
+               chosen.get(0), is(ComboSearchStrategy.DYNAMIC_PROGRAMMING.getSolver()));
+         
+         finder.setDynamicProgrammingMemoryLimit(DynamicProgrammingSearch.requiredMemory(count, 0));
+         chosen.clear();
+         finder.findCombinationsForAmount();
+         assertThat("Solver chosen within the table memory limit for " + count + " elements", 
+               chosen.get(0), is(ComboSearchStrategy.BACKTRACKING.getSolver()));
+      }
+   }
+   
+   /**
+    * Tests the AUTOMATIC strategy returns the same first combinations 
+    * as BACKTRACKING when the search stops after a number of results, 
+    * even when it would otherwise choose the meet in the middle search.
+    */
+   @Test
+   public void testAutomaticResultLimit()
+   {
+      List<ComboFinderElement> elements = randomElements(30, 38);
+      ComboFinder backtracking = new ComboFinder(elements, new BigDecimal("5000.00"));
+      backtracking.setTolerance(new BigDecimal("50.00"));
+      backtracking.setStrategy(ComboSearchStrategy.BACKTRACKING);
+      backtracking.setMaxResults(5);
+      List<FoundComboResultList> expected = backtracking.findCombinationsForAmount();
+      assertThat("Backtracking stopped at the result limit", 
+            backtracking.getLastSearchStatus(), is(ComboSearchStatus.MAX_RESULTS_REACHED));
+      
+      ComboFinder automatic = new ComboFinder(elements, new BigDecimal("5000.00"));
+      automatic.setTolerance(new BigDecimal("50.00"));
+      automatic.setDynamicProgrammingLimit(1);
+      automatic.setMaxResults(5);
+      List<FoundComboResultList> actual = automatic.findCombinationsForAmount();
+      assertThat("Same number of results", actual.size(), is(expected.size()));
+      for (int i = 0; i < expected.size(); i++)
+      {
+         assertThat("Same combination at index " + i, 
+               actual.get(i).getComboElements(), is(expected.get(i).getComboElements()));
+      }
+      assertThat("Same first combination", automatic.findFirstCombinationForAmount().getComboElements(), 
+            is(backtracking.findFirstCombinationForAmount().getComboElements()));
+   }
+   
+   /**
+    * Tests each element's amount is only read once per search, and 
+    * amounts too large to scale to long values are still searched.
+    */
+   @Test
+   public void testAmountPreparation()
+   {
+      final AtomicInteger reads = new AtomicInteger();
+      List<ComboFinderElement> elements = new ArrayList<>();
+      for (ComboFinderElement element : randomElements(20, 37))
+      {
+         elements.add(() -> 
+         {
+            reads.incrementAndGet();
+            return element.getComboAmount();
+         });
+      }
+      
+      ComboFinder finder = new ComboFinder(elements, Arrays.asList(new BigDecimal("100.00"), new BigDecimal("250.00")));
+      finder.setTolerance(new BigDecimal("1.00"));
+      for (ComboSearchStrategy strategy : ComboSearchStrategy.values())
+      {
+         reads.set(0);
+         finder.setStrategy(strategy);
+         finder.findCombinationsForAmount();
+         assertThat(strategy + " reads each amount once", reads.get(), is(elements.size()));
+      }
+      
+      elements = elementsFor("1E+30", "2E+30", "3E+30", "0.01");
+      for (ComboSearchStrategy strategy : ComboSearchStrategy.values())
+      {
+         assertThat(strategy + " finds amounts too large for a long", 
+               find(elements, "3000000000000000000000000000000.01", strategy).size(), is(2));
+      }
+   }
+}